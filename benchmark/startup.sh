@@ -0,0 +1,62 @@
+#!/usr/bin/env bash
+#
+# Compares the per invocation startup time of the command line enricher:
+#
+#  * plain JVM:   java -jar target/javadoctoopenapischema-<version>.jar
+#  * AppCDS:      the same with the class data sharing archive of the appcds profile
+#  * native:      the executable of the native profile
+#
+# Build the variants first:
+#
+#   mvn -Pappcds package     (JDK 13+)
+#   mvn -Pnative package     (GraalVM with native-image)
+#
+# Usage: benchmark/startup.sh [runs] [source path]
+
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+RUNS=${1:-10}
+SOURCE_PATH=${2:-src/test/java/de/ohmesoftware/javadoctoopenapischema/model}
+JAR=$(ls target/javadoctoopenapischema-*.jar 2>/dev/null | grep -v -e sources -e javadoc | head -n 1 || true)
+CDS_ARCHIVE=target/javadoctoopenapischema.jsa
+NATIVE=target/javadoctoopenapischema
+OUTPUT_DIR=$(mktemp -d)
+trap 'rm -rf "$OUTPUT_DIR"' EXIT
+
+ARGS=(-sourcePath "$SOURCE_PATH" -excludes "**.bak" -outputDir "$OUTPUT_DIR" -hateaosHAL)
+
+# measures the average wall clock time in milliseconds of the passed command
+measure() {
+  local name=$1
+  shift
+  local total=0
+  for ((i = 0; i < RUNS; i++)); do
+    # the output is written again in each run
+    rm -rf "${OUTPUT_DIR:?}"/*
+    local start end
+    start=$(date +%s%N)
+    "$@" > /dev/null 2>&1
+    end=$(date +%s%N)
+    total=$((total + (end - start) / 1000000))
+  done
+  printf "%-10s %6d ms\n" "$name" $((total / RUNS))
+}
+
+echo "Average of $RUNS runs enriching '$SOURCE_PATH':"
+if [[ -n "$JAR" ]]; then
+  measure "jvm" java -jar "$JAR" "${ARGS[@]}"
+  if [[ -f "$CDS_ARCHIVE" ]]; then
+    measure "appcds" java -XX:SharedArchiveFile="$CDS_ARCHIVE" -jar "$JAR" "${ARGS[@]}"
+  else
+    echo "appcds     skipped, build with: mvn -Pappcds package"
+  fi
+else
+  echo "jvm        skipped, build with: mvn -Pappcds package"
+fi
+if [[ -x "$NATIVE" ]]; then
+  measure "native" "$NATIVE" "${ARGS[@]}"
+else
+  echo "native     skipped, build with: mvn -Pnative package"
+fi
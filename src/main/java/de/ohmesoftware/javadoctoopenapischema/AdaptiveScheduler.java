@@ -0,0 +1,307 @@
+package de.ohmesoftware.javadoctoopenapischema;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Processes files concurrently with a concurrency adapted to the heap pressure.
+ * <p>
+ * The concurrency starts at one and is raised after each finished file while the heap has headroom. It is halved if
+ * the heap gets tight. The memory needed for a file is estimated from its size. A file whose estimate exceeds half of
+ * the heap headroom is processed on its own. The heap usage is sampled after each file and after each garbage
+ * collection.
+ * </p>
+ *
+ * @author <a href="mailto:k_o_@users.sourceforge.net">Karsten Ohme
+ * (k_o_@users.sourceforge.net)</a>
+ */
+class AdaptiveScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveScheduler.class);
+
+    /**
+     * Estimated heap bytes needed per byte of source for the AST and the output.
+     */
+    private static final long HEAP_PER_SOURCE_BYTE = 40;
+
+    /**
+     * Heap usage ratio below which the concurrency is raised.
+     */
+    private static final double LOW_HEAP_USAGE = 0.6;
+
+    /**
+     * Heap usage ratio above which the concurrency is halved.
+     */
+    private static final double HIGH_HEAP_USAGE = 0.85;
+
+    /**
+     * Task processing a single file.
+     */
+    @FunctionalInterface
+    interface FileTask {
+
+        void process(Path path) throws IOException;
+    }
+
+    /**
+     * The used heap in bytes.
+     */
+    private final LongSupplier heapUsed;
+
+    /**
+     * The maximum heap in bytes.
+     */
+    private final LongSupplier heapMax;
+
+    /**
+     * The maximum concurrency.
+     */
+    private final int maxConcurrency;
+
+    /**
+     * The shared executor. If <code>null</code> an executor is created for the run.
+     */
+    private final ExecutorService sharedExecutorService;
+
+    /**
+     * The current concurrency limit.
+     */
+    private int limit = 1;
+
+    /**
+     * The number of files in process.
+     */
+    private int running;
+
+    /**
+     * The estimated heap reserved by the files in process.
+     */
+    private long reserved;
+
+    /**
+     * <code>true</code> if a big file is processed on its own.
+     */
+    private boolean exclusive;
+
+    /**
+     * The first failure. No further files are started after a failure.
+     */
+    private Throwable failure;
+
+    /**
+     * Constructor. A scheduler is used for a single run.
+     *
+     * @param maxConcurrency The maximum concurrency.
+     */
+    AdaptiveScheduler(int maxConcurrency) {
+        this(maxConcurrency, null);
+    }
+
+    /**
+     * Constructor. A scheduler is used for a single run.
+     *
+     * @param maxConcurrency        The maximum concurrency.
+     * @param sharedExecutorService The executor shared by several runs. It is not shut down after the run. If
+     *                              <code>null</code> an executor is created for the run.
+     */
+    AdaptiveScheduler(int maxConcurrency, ExecutorService sharedExecutorService) {
+        this(maxConcurrency, sharedExecutorService, () -> ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+                AdaptiveScheduler::getRuntimeHeapMax);
+    }
+
+    /**
+     * Constructor. A scheduler is used for a single run.
+     *
+     * @param maxConcurrency        The maximum concurrency.
+     * @param sharedExecutorService The executor shared by several runs. It is not shut down after the run. If
+     *                              <code>null</code> an executor is created for the run.
+     * @param heapUsed              The used heap in bytes.
+     * @param heapMax               The maximum heap in bytes.
+     */
+    AdaptiveScheduler(int maxConcurrency, ExecutorService sharedExecutorService, LongSupplier heapUsed,
+                      LongSupplier heapMax) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.sharedExecutorService = sharedExecutorService;
+        this.heapUsed = heapUsed;
+        this.heapMax = heapMax;
+    }
+
+    private static long getRuntimeHeapMax() {
+        MemoryUsage heapUsage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        return heapUsage.getMax() > 0 ? heapUsage.getMax() : Runtime.getRuntime().maxMemory();
+    }
+
+    /**
+     * Creates an executor for processing files.
+     *
+     * @param threads The number of threads.
+     * @return the executor.
+     */
+    static ExecutorService createExecutorService(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "enricher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Processes the files and waits until all are processed.
+     *
+     * @param paths    The files.
+     * @param fileTask The task processing a file.
+     * @throws IOException if a file could not be processed. Runtime exceptions of a task are passed on.
+     */
+    void run(List<Path> paths, FileTask fileTask) throws IOException {
+        ExecutorService executorService = sharedExecutorService != null ? sharedExecutorService
+                : createExecutorService(maxConcurrency);
+        NotificationListener gcListener = (notification, handback) -> adapt();
+        List<NotificationEmitter> emitters = new ArrayList<>();
+        for (GarbageCollectorMXBean garbageCollectorMXBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (garbageCollectorMXBean instanceof NotificationEmitter) {
+                ((NotificationEmitter) garbageCollectorMXBean).addNotificationListener(gcListener, null, null);
+                emitters.add((NotificationEmitter) garbageCollectorMXBean);
+            }
+        }
+        try {
+            for (Path path : paths) {
+                long estimate = getEstimate(path);
+                boolean big = acquire(estimate);
+                if (hasFailed()) {
+                    release(estimate, big, null);
+                    break;
+                }
+                executorService.execute(() -> process(path, fileTask, estimate, big));
+            }
+            awaitIdle();
+        } finally {
+            if (executorService != sharedExecutorService) {
+                executorService.shutdown();
+            }
+            for (NotificationEmitter emitter : emitters) {
+                try {
+                    emitter.removeNotificationListener(gcListener);
+                } catch (ListenerNotFoundException e) {
+                    // already removed
+                }
+            }
+        }
+        rethrowFailure();
+    }
+
+    private static long getEstimate(Path path) {
+        try {
+            return Files.size(path) * HEAP_PER_SOURCE_BYTE;
+        } catch (IOException e) {
+            // the task reports the unreadable file
+            return 0;
+        }
+    }
+
+    private void process(Path path, FileTask fileTask, long estimate, boolean big) {
+        Throwable throwable = null;
+        try {
+            fileTask.process(path);
+        } catch (Throwable e) {
+            throwable = e;
+        }
+        release(estimate, big, throwable);
+    }
+
+    private long getHeapHeadroom() {
+        return heapMax.getAsLong() - heapUsed.getAsLong();
+    }
+
+    private synchronized boolean acquire(long estimate) throws IOException {
+        boolean big = estimate > getHeapHeadroom() / 2;
+        while (failure == null && (exclusive || running >= limit || (big && running > 0)
+                || (running > 0 && reserved + estimate > getHeapHeadroom()))) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for processing.", e);
+            }
+        }
+        if (big) {
+            LOGGER.debug("Processing big file on its own.");
+            exclusive = true;
+        }
+        running++;
+        reserved += estimate;
+        return big;
+    }
+
+    private synchronized void release(long estimate, boolean big, Throwable throwable) {
+        running--;
+        reserved -= estimate;
+        if (big) {
+            exclusive = false;
+        }
+        if (throwable != null && failure == null) {
+            failure = throwable;
+        }
+        adapt();
+    }
+
+    private synchronized void adapt() {
+        double usage = (double) heapUsed.getAsLong() / heapMax.getAsLong();
+        if (usage > HIGH_HEAP_USAGE && limit > 1) {
+            limit = Math.max(1, limit / 2);
+            LOGGER.debug(String.format("Heap usage %.2f, lowering concurrency to %d.", usage, limit));
+        } else if (usage < LOW_HEAP_USAGE && limit < maxConcurrency) {
+            limit++;
+            LOGGER.debug(String.format("Heap usage %.2f, raising concurrency to %d.", usage, limit));
+        }
+        notifyAll();
+    }
+
+    private synchronized void awaitIdle() throws IOException {
+        while (running > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for processing.", e);
+            }
+        }
+    }
+
+    private synchronized boolean hasFailed() {
+        return failure != null;
+    }
+
+    private synchronized void rethrowFailure() throws IOException {
+        if (failure == null) {
+            return;
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IllegalStateException(failure);
+    }
+
+}
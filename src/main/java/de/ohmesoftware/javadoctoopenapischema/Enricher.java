@@ -1,29 +1,35 @@
 package de.ohmesoftware.javadoctoopenapischema;
 
 import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParseStart;
+import com.github.javaparser.Problem;
+import com.github.javaparser.Providers;
 import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.DataKey;
 import com.github.javaparser.ast.body.BodyDeclaration;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
 import com.github.javaparser.ast.comments.Comment;
 import com.github.javaparser.ast.expr.AnnotationExpr;
-import com.github.javaparser.ast.expr.BooleanLiteralExpr;
 import com.github.javaparser.ast.expr.Expression;
-import com.github.javaparser.ast.expr.IntegerLiteralExpr;
 import com.github.javaparser.ast.expr.MemberValuePair;
 import com.github.javaparser.ast.expr.NormalAnnotationExpr;
-import com.github.javaparser.ast.expr.StringLiteralExpr;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.type.Type;
 import com.github.javaparser.javadoc.Javadoc;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -35,10 +41,25 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.sql.Blob;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Enriches the passed source path and sub directories and adds or sets the "description" property of the @Schema annotation
@@ -55,6 +76,12 @@ public class Enricher {
     private static final Logger LOGGER = LoggerFactory.getLogger(Enricher.class);
 
     private static final String JAVA_EXT = ".java";
+    private static final String STAMP_DIR = ".enricher-stamps";
+    private static final String STAMP_EXT = ".stamp";
+    private static final String STAMP_SEPARATOR = "\t";
+    private static final String MISSING = "missing";
+    private static final String ENRICHED = "enriched";
+    private static final String COPIED = "copied";
     private static final String DOT = ".";
     private static final String SLASH = "/";
 
@@ -64,13 +91,6 @@ public class Enricher {
     private static final String SPACE_STRING = " ";
     private static final String INCLUDE_EXCLUDE_SEPARATOR = ",";
     private static final String QUOTATION_MARK_STRING = "\"";
-    private static final String SCHEMA_DESCRIPTION = "description";
-    private static final String SCHEMA_TITLE = "title";
-    private static final String SCHEMA_REQUIRED = "required";
-    private static final String SCHEMA_MAX_LENGTH = "maxLength";
-    private static final String SCHEMA_MIN_LENGTH = "minLength";
-    private static final String SCHEMA_MAX = "maximum";
-    private static final String SCHEMA_MIN = "minimum";
 
     private static final String GLOB = "glob:";
 
@@ -99,13 +119,146 @@ public class Enricher {
     private static final String INCLUDES_OPT = "-includes";
     private static final String SOURCE_OPT = "-sourcePath";
     private static final String HATEAOS_HAL_OPT = "-hateaosHAL";
+    private static final String OUTPUT_DIR_OPT = "-outputDir";
+    private static final String CACHE_DIR_OPT = "-cacheDir";
+    private static final String CACHE_MAX_SIZE_OPT = "-cacheMaxSize";
+    private static final String MAX_THREADS_OPT = "-maxThreads";
+    private static final String ONLY_ANNOTATED_OPT = "-onlyAnnotated";
+    private static final String MARKER_OPT = "-marker";
+    private static final String CHANGED_SINCE_OPT = "-changedSince";
+    private static final String FILES_OPT = "-files";
+    private static final String ARCHIVE_OPT = "-archive";
+    private static final String FINGERPRINT_DIR_OPT = "-fingerprintDir";
+    private static final String RETRY_OPT = "-retry";
+    private static final String JAR_SCHEME = "jar:";
+    private static final String ROOT = "/";
+    private static final String STDIN = "-";
+    private static final String FILE_LIST_PREFIX = "@";
+    private static final String COMMENT_PREFIX = "#";
     private static final String GET = "get";
     private static final String IS = "is";
+    private static final String GIT = "git";
+
+    private static final Pattern PACKAGE_PATTERN = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+
+    private static final long DEFAULT_CACHE_MAX_SIZE = 100 * 1024 * 1024;
+
+    /**
+     * The sources read while enriching a compilation unit.
+     */
+    private static final DataKey<Set<Path>> REFERENCED_SOURCES = new DataKey<Set<Path>>() {
+    };
+
+    /**
+     * The sources read while computing the schema model of the current member.
+     */
+    private static final DataKey<Set<Path>> MEMBER_REFERENCED_SOURCES = new DataKey<Set<Path>>() {
+    };
+
+    /**
+     * The member fingerprints of a compilation unit.
+     */
+    private static final DataKey<MemberFingerprints> MEMBER_FINGERPRINTS = new DataKey<MemberFingerprints>() {
+    };
+
+    /**
+     * The Javadoc and the constraints of a member.
+     */
+    private static class MemberInfo {
+
+        /**
+         * The Javadoc or <code>null</code>.
+         */
+        private String javadoc;
+
+        /**
+         * <code>true</code> if required, <code>null</code> if not specified.
+         */
+        private Boolean required;
+
+        /**
+         * The minimum length or -1.
+         */
+        private int minSize = -1;
+
+        /**
+         * The maximum length or -1.
+         */
+        private int maxSize = -1;
+
+        /**
+         * The minimum value or -1.
+         */
+        private int min = -1;
+
+        /**
+         * The maximum value or -1.
+         */
+        private int max = -1;
+
+        /**
+         * Overlays the inherited member information. The specified values of this member win.
+         *
+         * @param inherited The member information of the superclass.
+         * @return the combined member information.
+         */
+        private MemberInfo overlay(MemberInfo inherited) {
+            MemberInfo memberInfo = new MemberInfo();
+            memberInfo.javadoc = javadoc != null ? javadoc : inherited.javadoc;
+            memberInfo.required = required != null ? required : inherited.required;
+            memberInfo.minSize = minSize > -1 ? minSize : inherited.minSize;
+            memberInfo.maxSize = maxSize > -1 ? maxSize : inherited.maxSize;
+            memberInfo.min = min > -1 ? min : inherited.min;
+            memberInfo.max = max > -1 ? max : inherited.max;
+            return memberInfo;
+        }
+    }
+
+    /**
+     * The members of a superclass including the members it inherits.
+     */
+    private static class InheritedMembers {
+
+        /**
+         * The member information by property name.
+         */
+        private final Map<String, MemberInfo> members = new HashMap<>();
+
+        /**
+         * The sources of the superclass chain.
+         */
+        private final Set<Path> sources = new LinkedHashSet<>();
+    }
 
     /**
-     * The source path to enrich.
+     * The parser of each thread. A parser is reused, since creating it is expensive.
      */
-    private String sourcePath;
+    private static final ThreadLocal<JavaParser> PARSER = ThreadLocal.withInitial(JavaParser::new);
+
+    /**
+     * The source paths to enrich.
+     */
+    private List<String> sourcePaths;
+
+    /**
+     * The explicit files to enrich in addition to the source paths.
+     */
+    private List<String> files;
+
+    /**
+     * The base source paths of all source paths and files for resolving referenced types across them.
+     */
+    private List<String> baseSourcePaths = new ArrayList<>();
+
+    /**
+     * The file system of the source paths, files and the output directory.
+     */
+    private FileSystem fileSystem = FileSystems.getDefault();
+
+    /**
+     * The directory of the member fingerprint sidecar files. If <code>null</code> no fingerprints are used.
+     */
+    private String fingerprintPath;
 
     /**
      * The includes.
@@ -122,6 +275,82 @@ public class Enricher {
      */
     private boolean hateaos;
 
+    /**
+     * The output directory receiving the enriched copies. If <code>null</code> the sources are enriched in place.
+     */
+    private String outputPath;
+
+    /**
+     * The result cache. If <code>null</code> no cache is used.
+     */
+    private ResultCache resultCache;
+
+    /**
+     * The maximum number of files processed concurrently.
+     */
+    private int maxThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Pattern matching the usage of one of the required annotations. If <code>null</code> no annotation is required.
+     */
+    private Pattern annotationFilter;
+
+    /**
+     * The marker text. If <code>null</code> no marker is required.
+     */
+    private String marker;
+
+    /**
+     * The git reference the changed files are determined against. If <code>null</code> all files are enriched.
+     */
+    private String changedSince;
+
+    /**
+     * The parsed referenced types.
+     */
+    private TypeCache typeCache = new TypeCache();
+
+    /**
+     * The executor shared with other runs. If <code>null</code> an executor is created for each run.
+     */
+    private ExecutorService executorService;
+
+    /**
+     * The files processed by the current run.
+     */
+    private List<Path> processedFiles;
+
+    /**
+     * The failures of the current run.
+     */
+    private List<EnrichmentResult.Failure> failures;
+
+    /**
+     * The members of the superclasses by their source file. Each superclass is analysed once per run.
+     */
+    private Map<Path, CompletableFuture<InheritedMembers>> superclassMembers = new ConcurrentHashMap<>();
+
+    /**
+     * The content hashes of the referenced sources of the current run.
+     */
+    private Map<Path, String> contentHashes = new ConcurrentHashMap<>();
+
+    /**
+     * The base source paths of the explicit files of the current run by the file.
+     */
+    private Map<Path, Path> fileRoots = new ConcurrentHashMap<>();
+
+    /**
+     * The file listing the failed files. If <code>null</code> the failed files are not kept.
+     */
+    private String retryPath;
+
+    /**
+     * <code>true</code> if the outputs whose source was removed are kept, e.g. since other runs write to the output
+     * directory concurrently.
+     */
+    private boolean keepStaleOutputs;
+
     /**
      * Constructor.
      *
@@ -131,30 +360,205 @@ public class Enricher {
      * @param hateaos    <code>true</code> if HATEAOS is used. In this case associations are rendered as links.
      */
     public Enricher(String sourcePath, Set<String> includes, Set<String> excludes, boolean hateaos) {
-        this.sourcePath = sourcePath;
+        this(Collections.singletonList(sourcePath), includes, excludes, hateaos);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param sourcePaths The source paths to enrich. Referenced types are resolved across all source paths.
+     * @param includes    The includes.
+     * @param excludes    The excludes.
+     * @param hateaos     <code>true</code> if HATEAOS is used. In this case associations are rendered as links.
+     */
+    public Enricher(List<String> sourcePaths, Set<String> includes, Set<String> excludes, boolean hateaos) {
+        this.sourcePaths = sourcePaths;
         this.includes = includes;
         this.excludes = excludes;
         this.hateaos = hateaos;
     }
 
+    /**
+     * Constructor for a run of a session. The configuration is copied from the passed enricher.
+     *
+     * @param configuration   The enricher holding the configuration.
+     * @param sourcePaths     The source paths to enrich.
+     * @param files           The explicit files to enrich or <code>null</code>.
+     * @param typeCache       The parsed referenced types shared with other runs.
+     * @param executorService The executor shared with other runs.
+     */
+    Enricher(Enricher configuration, List<String> sourcePaths, List<String> files, TypeCache typeCache,
+             ExecutorService executorService) {
+        this(sourcePaths, configuration.includes, configuration.excludes, configuration.hateaos);
+        this.files = files;
+        this.fileSystem = configuration.fileSystem;
+        this.fingerprintPath = configuration.fingerprintPath;
+        this.outputPath = configuration.outputPath;
+        this.resultCache = configuration.resultCache;
+        this.maxThreads = configuration.maxThreads;
+        this.annotationFilter = configuration.annotationFilter;
+        this.marker = configuration.marker;
+        this.changedSince = configuration.changedSince;
+        this.typeCache = typeCache;
+        this.executorService = executorService;
+        // the runs of a session may share the output directory
+        this.keepStaleOutputs = true;
+    }
+
+    /**
+     * Sets the file system the source paths, the explicit files and the output directory are resolved against.
+     * This allows e.g. to enrich sources inside a ZIP or JAR file system or an in-memory file system.
+     *
+     * @param fileSystem The file system. Default is the default file system.
+     */
+    public void setFileSystem(FileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+    }
+
+    /**
+     * Sets the directory for the member fingerprints. The inputs of each field, getter and type are fingerprinted and
+     * kept together with the computed schema in a sidecar file per source file. Members whose inputs and referenced
+     * types are unchanged are not computed again.
+     *
+     * @param fingerprintPath The directory or <code>null</code> to compute all members.
+     */
+    public void setFingerprintPath(String fingerprintPath) {
+        this.fingerprintPath = fingerprintPath;
+    }
+
+    /**
+     * Sets the file listing the files which failed. If the file exists only the listed files are enriched, so a run
+     * after fixing the failures does not process the other files again. After the run the file lists the files which
+     * failed in this run and it is deleted if all files are enriched. The file is not used by an
+     * {@link EnrichmentSession}.
+     *
+     * @param retryPath The file or <code>null</code> to not keep the failed files.
+     */
+    public void setRetryPath(String retryPath) {
+        this.retryPath = retryPath;
+    }
+
+    /**
+     * Sets explicit files to enrich in addition to the source paths. The includes and excludes are not applied.
+     *
+     * @param files The files or <code>null</code>.
+     */
+    public void setFiles(List<String> files) {
+        this.files = files;
+    }
+
+    /**
+     * Sets the output directory. The enriched files are written to this directory mirroring the tree below the
+     * source path and the source path is left untouched. Explicit files not below a source path are mirrored relative
+     * to their base source path derived from their package. Each output is stamped in the
+     * <code>.enricher-stamps</code> directory with the hashes of its source, the referenced types, the options and the
+     * enricher version. Outputs whose stamp still matches are not written again. Outputs whose source below the source
+     * paths and files of the run was removed are deleted, except in the runs of an {@link EnrichmentSession}.
+     *
+     * @param outputPath The output directory or <code>null</code> to enrich the sources in place.
+     */
+    public void setOutputPath(String outputPath) {
+        this.outputPath = outputPath;
+    }
 
-    private static CompilationUnit parseFile(File file) {
+    /**
+     * Sets the result cache. The cache stores the enriched output keyed by the source content, the referenced sources,
+     * the enricher version and the options and can be shared by several workspaces and parallel runs on one machine.
+     *
+     * @param cachePath The cache directory or <code>null</code> to disable the cache.
+     * @param maxSize   The maximum size of the cache in bytes. The least recently used entries are evicted if exceeded.
+     */
+    public void setCache(String cachePath, long maxSize) {
+        this.resultCache = cachePath == null ? null : new ResultCache(Paths.get(cachePath), maxSize);
+    }
+
+    /**
+     * Sets the maximum number of files processed concurrently. The concurrency is adapted to the heap usage up to
+     * this maximum. Default is the number of available processors.
+     *
+     * @param maxThreads The maximum number of files processed concurrently.
+     */
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * Sets the annotations of which one must be used in a file for enriching it. The raw file content is scanned
+     * for the annotation before parsing it, so files without a candidate type are not parsed.
+     *
+     * @param annotations The fully qualified annotation class names or <code>null</code> to enrich all files.
+     */
+    public void setOnlyAnnotated(Set<String> annotations) {
+        if (annotations == null || annotations.isEmpty()) {
+            this.annotationFilter = null;
+            return;
+        }
+        this.annotationFilter = Pattern.compile("@\\s*(" + annotations.stream().flatMap(
+                a -> Stream.of(a, getSimpleNameFromClass(a))).distinct().map(Pattern::quote)
+                .collect(Collectors.joining("|")) + ")(?![\\w$])");
+    }
+
+    /**
+     * Sets a marker text which must be contained in a file for enriching it. The raw file content is scanned
+     * for the marker before parsing it. If also annotations are required a file containing either is enriched.
+     *
+     * @param marker The marker or <code>null</code> to enrich all files.
+     */
+    public void setMarker(String marker) {
+        this.marker = marker;
+    }
+
+    /**
+     * Sets the git reference to enrich only changed files. The changed files are determined from the local git
+     * repository containing the source path and include uncommitted and untracked files. Files referencing a type
+     * defined in a changed file are also enriched. With an output directory also unchanged files without an output
+     * are enriched.
+     *
+     * @param changedSince The git reference, e.g. a branch, tag or commit, or <code>null</code> to enrich all files.
+     */
+    public void setChangedSince(String changedSince) {
+        this.changedSince = changedSince;
+    }
+
+    private static ParseResult<CompilationUnit> parse(String source) {
+        return PARSER.get().parse(ParseStart.COMPILATION_UNIT, Providers.provider(source));
+    }
+
+    private static List<String> getProblemMessages(ParseResult<?> parseResult) {
+        return parseResult.getProblems().stream().map(Problem::getVerboseMessage).collect(Collectors.toList());
+    }
+
+    private static CompilationUnit parseFile(Path file) {
+        ParseResult<CompilationUnit> parseResult;
         try {
-            return JavaParser.parse(file);
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(String.format("Could not find file: %s", file), e);
+            parseResult = parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not read file: %s", file), e);
         }
+        if (!parseResult.isSuccessful()) {
+            throw new RuntimeException(String.format("Could not parse file: %s: %s", file,
+                    String.join("; ", getProblemMessages(parseResult))));
+        }
+        return parseResult.getResult().get();
+    }
+
+    private Path toPath(String path) {
+        return fileSystem.getPath(path);
     }
 
     private static String getBaseSourcePath(CompilationUnit compilationUnit, String sourcePath) {
+        return getBaseSourcePath(compilationUnit.getPackageDeclaration().map(p -> p.getName().asString()).orElse(EMPTY_STRING),
+                sourcePath);
+    }
+
+    private static String getBaseSourcePath(String _package, String sourcePath) {
         // normalize to unix path separators
         sourcePath = sourcePath.replace('\\', '/');
-        // remove file at and
+        // remove file at and, a file without a directory is in the working directory
         if (sourcePath.endsWith(JAVA_EXT)) {
-            sourcePath = sourcePath.substring(0, sourcePath.lastIndexOf('/'));
+            sourcePath = sourcePath.substring(0, Math.max(sourcePath.lastIndexOf('/'), 0));
         }
 
-        String _package = compilationUnit.getPackageDeclaration().map(p -> p.getName().asString()).orElse(EMPTY_STRING);
         String packagePath = _package.replace(".", SLASH);
         int overlap = 0;
         for (int i = packagePath.length(); i >= 0; i--) {
@@ -171,16 +575,68 @@ public class Enricher {
             System.err.println("No command line options passed.");
             System.exit(-1);
         }
-        String sourcePath = parseOption(args, SOURCE_OPT, true, null);
+        List<String> sourcePaths = parseOptions(args, SOURCE_OPT);
+        String files = parseOption(args, FILES_OPT, false, null);
+        String archive = parseOption(args, ARCHIVE_OPT, false, null);
+        String fingerprintPath = parseOption(args, FINGERPRINT_DIR_OPT, false, null);
+        String retryPath = parseOption(args, RETRY_OPT, false, null);
+        if (archive != null && sourcePaths.isEmpty() && files == null) {
+            sourcePaths.add(ROOT);
+        }
+        if (sourcePaths.isEmpty() && files == null) {
+            System.err.println(String.format("Required option '%s' or '%s' is missing.", SOURCE_OPT, FILES_OPT));
+            System.exit(-2);
+        }
         String includes = parseOption(args, INCLUDES_OPT, false, null);
         String excludes = parseOption(args, EXCLUDES_OPT, false, null);
         boolean hateaos = parseFlag(args, HATEAOS_HAL_OPT);
-        Enricher enricher = new Enricher(sourcePath,
+        String outputPath = parseOption(args, OUTPUT_DIR_OPT, false, null);
+        String cachePath = parseOption(args, CACHE_DIR_OPT, false, null);
+        String cacheMaxSize = parseOption(args, CACHE_MAX_SIZE_OPT, false, String.valueOf(DEFAULT_CACHE_MAX_SIZE));
+        String maxThreads = parseOption(args, MAX_THREADS_OPT, false, null);
+        String onlyAnnotated = parseOption(args, ONLY_ANNOTATED_OPT, false, null);
+        String marker = parseOption(args, MARKER_OPT, false, null);
+        String changedSince = parseOption(args, CHANGED_SINCE_OPT, false, null);
+        Enricher enricher = new Enricher(sourcePaths,
                 includes == null ? null : Arrays.stream(includes.split(INCLUDE_EXCLUDE_SEPARATOR)).map(String::trim).collect(Collectors.toSet()),
                 excludes == null ? null : Arrays.stream(excludes.split(INCLUDE_EXCLUDE_SEPARATOR)).map(String::trim).collect(Collectors.toSet()),
                 hateaos
         );
-        enricher.enrich();
+        enricher.setFiles(readFileList(files));
+        enricher.setOutputPath(outputPath);
+        enricher.setCache(cachePath, Long.parseLong(cacheMaxSize));
+        if (maxThreads != null) {
+            enricher.setMaxThreads(Integer.parseInt(maxThreads));
+        }
+        enricher.setOnlyAnnotated(onlyAnnotated == null ? null :
+                Arrays.stream(onlyAnnotated.split(INCLUDE_EXCLUDE_SEPARATOR)).map(String::trim).collect(Collectors.toSet()));
+        enricher.setMarker(marker);
+        enricher.setChangedSince(changedSince);
+        enricher.setFingerprintPath(fingerprintPath);
+        enricher.setRetryPath(retryPath);
+        EnrichmentResult result;
+        if (archive == null) {
+            result = enricher.enrich();
+        } else {
+            try (FileSystem archiveFileSystem = FileSystems.newFileSystem(
+                    URI.create(JAR_SCHEME + Paths.get(archive).toAbsolutePath().toUri()), Collections.emptyMap())) {
+                enricher.setFileSystem(archiveFileSystem);
+                result = enricher.enrich();
+            } catch (IOException e) {
+                System.err.println(String.format("Could not open archive '%s'.", archive));
+                System.exit(-2);
+                return;
+            }
+        }
+        if (!result.isSuccessful()) {
+            System.err.println(String.format("%d of %d files could not be enriched:", result.getFailures().size(),
+                    result.getProcessedFiles().size()));
+            result.getFailures().forEach(f -> System.err.println(f.toString()));
+            if (retryPath != null) {
+                System.err.println(String.format("Run again with '%s %s' to enrich only these files.", RETRY_OPT, retryPath));
+            }
+            System.exit(-3);
+        }
     }
 
     private static boolean parseFlag(String[] args, String option) {
@@ -191,6 +647,45 @@ public class Enricher {
         return true;
     }
 
+    private static List<String> readFileList(String files) {
+        if (files == null) {
+            return null;
+        }
+        List<String> lines;
+        if (files.equals(STDIN)) {
+            lines = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)).lines()
+                    .collect(Collectors.toList());
+        } else if (files.startsWith(FILE_LIST_PREFIX)) {
+            try {
+                lines = Files.readAllLines(Paths.get(files.substring(FILE_LIST_PREFIX.length())), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                System.err.println(String.format("Could not read file list '%s'.", files.substring(FILE_LIST_PREFIX.length())));
+                System.exit(-2);
+                return null;
+            }
+        } else {
+            lines = Arrays.asList(files.split(INCLUDE_EXCLUDE_SEPARATOR));
+        }
+        return lines.stream().map(String::trim).filter(l -> !l.isEmpty() && !l.startsWith(COMMENT_PREFIX))
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> parseOptions(String[] args, String option) {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals(option)) {
+                if (args.length > i + 1) {
+                    Arrays.stream(args[i + 1].split(INCLUDE_EXCLUDE_SEPARATOR)).map(String::trim)
+                            .filter(v -> !v.isEmpty()).forEach(values::add);
+                } else {
+                    System.err.println(String.format("Required option argument for '%s' is missing.", option));
+                    System.exit(-2);
+                }
+            }
+        }
+        return values;
+    }
+
     private static String parseOption(String[] args, String option, boolean required,
                                       String _default) {
         Optional<String> optionArg = Arrays.stream(args).filter(s -> s.equals(option)).findFirst();
@@ -215,10 +710,112 @@ public class Enricher {
         return _default;
     }
 
-    public void enrich() {
-        LOGGER.info(String.format("Enriching source path '%s'", sourcePath));
+    /**
+     * Enriches the source paths and files. A run must not overlap with another run of the same enricher, use an
+     * {@link EnrichmentSession} for concurrent runs.
+     *
+     * @return the result.
+     */
+    public EnrichmentResult enrich() {
+        long start = System.currentTimeMillis();
+        processedFiles = Collections.synchronizedList(new ArrayList<>());
+        failures = Collections.synchronizedList(new ArrayList<>());
+        superclassMembers = new ConcurrentHashMap<>();
+        contentHashes = new ConcurrentHashMap<>();
+        fileRoots = new ConcurrentHashMap<>();
+        List<Path> paths = readRetryFiles();
+        if (paths == null) {
+            Set<Path> candidates = new LinkedHashSet<>();
+            for (String sourcePath : sourcePaths) {
+                LOGGER.info(String.format("Enriching source path '%s'", sourcePath));
+                collectFiles(toPath(sourcePath), candidates);
+            }
+            if (files != null) {
+                LOGGER.info(String.format("Enriching %d explicit files", files.size()));
+                files.forEach(f -> candidates.add(toPath(f).normalize()));
+            }
+            paths = new ArrayList<>(candidates);
+        }
+        baseSourcePaths = getBaseSourcePaths();
+        if (changedSince != null) {
+            paths = selectChanged(paths);
+        }
+        try {
+            new AdaptiveScheduler(maxThreads, executorService).run(paths, this::handleFile);
+        } catch (IOException e) {
+            LOGGER.error("Could not enrich source files.", e);
+            throw new RuntimeException("Could not enrich source files.", e);
+        }
+        List<EnrichmentResult.Failure> sortedFailures = new ArrayList<>(failures);
+        sortedFailures.sort(Comparator.comparing(EnrichmentResult.Failure::getFile));
+        if (!sortedFailures.isEmpty()) {
+            LOGGER.error(String.format("%d of %d files could not be enriched.", sortedFailures.size(), paths.size()));
+        }
+        // the progress is kept before anything else can fail
+        writeRetryFiles(sortedFailures);
+        if (outputPath != null && !keepStaleOutputs) {
+            deleteStaleOutputs();
+        }
+        return new EnrichmentResult(new ArrayList<>(processedFiles), sortedFailures,
+                System.currentTimeMillis() - start);
+    }
+
+    private List<Path> readRetryFiles() {
+        if (retryPath == null || !Files.isRegularFile(Paths.get(retryPath))) {
+            return null;
+        }
+        try {
+            // files fixed by deleting them are done
+            List<Path> paths = Files.readAllLines(Paths.get(retryPath), StandardCharsets.UTF_8).stream()
+                    .map(String::trim).filter(l -> !l.isEmpty()).map(this::toPath)
+                    .filter(Files::isRegularFile).collect(Collectors.toList());
+            LOGGER.info(String.format("Retrying %d failed files", paths.size()));
+            return paths;
+        } catch (IOException e) {
+            LOGGER.error(String.format("Could not read retry file '%s'.", retryPath), e);
+            throw new RuntimeException(String.format("Could not read retry file '%s'.", retryPath), e);
+        }
+    }
+
+    private void writeRetryFiles(List<EnrichmentResult.Failure> failures) {
+        if (retryPath == null) {
+            return;
+        }
+        Path retryFile = Paths.get(retryPath);
+        try {
+            if (failures.isEmpty()) {
+                Files.deleteIfExists(retryFile);
+                return;
+            }
+            if (retryFile.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(retryFile.toAbsolutePath().getParent());
+            }
+            Files.write(retryFile, failures.stream().map(f -> f.getFile().toString()).collect(Collectors.toList()),
+                    StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOGGER.error(String.format("Could not write retry file '%s'.", retryPath), e);
+            throw new RuntimeException(String.format("Could not write retry file '%s'.", retryPath), e);
+        }
+    }
+
+    private void addFailure(Path path, List<String> messages) {
+        LOGGER.error(String.format("Could not enrich file '%s': %s", path.toString(), String.join("; ", messages)));
+        failures.add(new EnrichmentResult.Failure(path, messages));
+    }
+
+    private void handleFile(Path path) {
         try {
-            Files.walkFileTree(Paths.get(sourcePath), new SimpleFileVisitor<Path>() {
+            handleSchema(path);
+        } catch (IOException | RuntimeException e) {
+            // the other files are still enriched
+            LOGGER.debug(String.format("Failure of file '%s'.", path.toString()), e);
+            addFailure(path, Collections.singletonList(e.getMessage() != null ? e.getMessage() : e.toString()));
+        }
+    }
+
+    private void collectFiles(Path sourcePath, Set<Path> candidates) {
+        try {
+            Files.walkFileTree(sourcePath, new SimpleFileVisitor<Path>() {
 
                 @Override
                 public FileVisitResult visitFile(Path path,
@@ -227,8 +824,8 @@ public class Enricher {
                     if (includes != null && !includes.isEmpty()) {
                         boolean handle = false;
                         for (String include : includes) {
-                            PathMatcher pathMatcher = FileSystems.getDefault().getPathMatcher(GLOB + include);
-                            if (pathMatcher.matches(path) && path.toFile().isFile()) {
+                            PathMatcher pathMatcher = fileSystem.getPathMatcher(GLOB + include);
+                            if (pathMatcher.matches(path) && Files.isRegularFile(path)) {
                                 LOGGER.debug(String.format("Included file: '%s'", path.getFileName().toString()));
                                 // handle
                                 handle = true;
@@ -243,10 +840,10 @@ public class Enricher {
 
                     if (excludes != null && !excludes.isEmpty()) {
                         for (String exclude : excludes) {
-                            PathMatcher pathMatcher = FileSystems.getDefault().getPathMatcher(GLOB + exclude);
+                            PathMatcher pathMatcher = fileSystem.getPathMatcher(GLOB + exclude);
                             if (pathMatcher.matches(path)) {
                                 // skip sub dirs if a directory
-                                if (path.toFile().isDirectory()) {
+                                if (Files.isDirectory(path)) {
                                     return FileVisitResult.SKIP_SUBTREE;
                                 }
                                 LOGGER.debug(String.format("Excluded file: '%s'", path.getFileName().toString()));
@@ -256,7 +853,7 @@ public class Enricher {
                         }
                     }
                     // handle
-                    handleSchema(path);
+                    candidates.add(path.normalize());
                     return FileVisitResult.CONTINUE;
                 }
 
@@ -272,6 +869,347 @@ public class Enricher {
         }
     }
 
+    private List<String> getBaseSourcePaths() {
+        List<String> bases = new ArrayList<>();
+        for (Path dir : getSourceRoots()) {
+            // the package of any source determines the base source path
+            try (Stream<Path> sources = Files.walk(dir)) {
+                Optional<Path> source = sources.filter(p -> p.toString().endsWith(JAVA_EXT)
+                        && Files.isRegularFile(p)).findFirst();
+                if (source.isPresent()) {
+                    Matcher matcher = PACKAGE_PATTERN.matcher(new String(Files.readAllBytes(source.get()), StandardCharsets.UTF_8));
+                    String base = getBaseSourcePath(matcher.find() ? matcher.group(1) : EMPTY_STRING, source.get().toString());
+                    if (!bases.contains(base)) {
+                        bases.add(base);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Could not determine base source path of '%s'", dir.toString()), e);
+            }
+        }
+        for (Path root : getFileRoots()) {
+            String base = root.toString().replace('\\', '/');
+            base = base.endsWith(SLASH) ? base : base + SLASH;
+            if (!bases.contains(base)) {
+                bases.add(base);
+            }
+        }
+        return bases;
+    }
+
+    private List<Path> getFileRoots() {
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        return files.stream().map(f -> getFileRoot(toPath(f).toAbsolutePath().normalize())).distinct()
+                .collect(Collectors.toList());
+    }
+
+    private Path getFileRoot(Path file) {
+        return fileRoots.computeIfAbsent(file, f -> {
+            // the package of the file determines its base source path
+            try {
+                Matcher matcher = PACKAGE_PATTERN.matcher(new String(Files.readAllBytes(f), StandardCharsets.UTF_8));
+                Path root = toPath(getBaseSourcePath(matcher.find() ? matcher.group(1) : EMPTY_STRING, f.toString()))
+                        .toAbsolutePath().normalize();
+                if (f.startsWith(root)) {
+                    return root;
+                }
+                LOGGER.warn(String.format("Package of file '%s' does not match its directory", f.toString()));
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Could not determine base source path of '%s'", f.toString()), e);
+            }
+            return f.getParent();
+        });
+    }
+
+    private List<String> runGit(Path dir, String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(GIT);
+        command.addAll(Arrays.asList("-c", "core.quotepath=off"));
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).directory(dir.toFile())
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        List<String> lines;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            lines = reader.lines().filter(l -> !l.isEmpty()).collect(Collectors.toList());
+        }
+        try {
+            if (process.waitFor() != 0) {
+                throw new IOException(String.format("Git command failed: %s", String.join(SPACE_STRING, command)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(String.format("Interrupted git command: %s", String.join(SPACE_STRING, command)), e);
+        }
+        return lines;
+    }
+
+    private List<Path> selectChanged(List<Path> paths) {
+        if (fileSystem != FileSystems.getDefault()) {
+            LOGGER.warn("Changed files can only be determined on the default file system, enriching all files.");
+            return paths;
+        }
+        Set<Path> changedFiles = new HashSet<>();
+        try {
+            // the repository is determined once per root, not per package directory
+            Set<Path> roots = new LinkedHashSet<>(getSourceRoots());
+            roots.addAll(getFileRoots());
+            paths.stream().map(p -> p.toAbsolutePath().normalize()).filter(p -> roots.stream().noneMatch(p::startsWith))
+                    .forEach(p -> roots.add(p.getParent()));
+            Set<Path> topLevels = new HashSet<>();
+            for (Path root : roots) {
+                topLevels.add(Paths.get(runGit(root, "rev-parse", "--show-toplevel").get(0)));
+            }
+            for (Path topLevel : topLevels) {
+                List<String> changed = new ArrayList<>(runGit(topLevel, "diff", "--name-only", changedSince, "--"));
+                changed.addAll(runGit(topLevel, "ls-files", "--others", "--exclude-standard"));
+                changed.forEach(c -> changedFiles.add(topLevel.resolve(c).toAbsolutePath().normalize()));
+            }
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not determine files changed since '%s', enriching all files.", changedSince), e);
+            return paths;
+        }
+        // the classification of types defined in changed files might have changed, so also referencing files are enriched
+        Set<String> changedTypes = changedFiles.stream().map(Enricher::getTypeName).filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Path, String> contents = new HashMap<>();
+        Set<Path> selected = new HashSet<>();
+        for (Path path : paths) {
+            try {
+                // git reports the real path
+                if (changedFiles.contains(path.toRealPath())) {
+                    selected.add(path);
+                } else {
+                    contents.put(path, new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Could not check file '%s' for references to changed types", path.getFileName().toString()), e);
+                selected.add(path);
+            }
+        }
+        // subclasses inherit the members of the changed types, so their subclasses are affected, too
+        Set<String> extendingTypes = changedTypes;
+        while (!extendingTypes.isEmpty()) {
+            Pattern extendsPattern = Pattern.compile("(?<![\\w$])extends\\s+(?:[\\w$]+\\s*\\.\\s*)*("
+                    + extendingTypes.stream().map(Pattern::quote).collect(Collectors.joining("|")) + ")(?![\\w$])");
+            extendingTypes = contents.entrySet().stream().filter(e -> extendsPattern.matcher(e.getValue()).find())
+                    .map(e -> getTypeName(e.getKey())).filter(n -> n != null && !changedTypes.contains(n))
+                    .collect(Collectors.toSet());
+            changedTypes.addAll(extendingTypes);
+        }
+        Pattern referencePattern = changedTypes.isEmpty() ? null : Pattern.compile("(?<![\\w$])("
+                + changedTypes.stream().map(Pattern::quote).collect(Collectors.joining("|")) + ")(?![\\w$])");
+        for (Map.Entry<Path, String> entry : contents.entrySet()) {
+            if (referencePattern != null && referencePattern.matcher(entry.getValue()).find()) {
+                selected.add(entry.getKey());
+            }
+        }
+        LOGGER.info(String.format("Enriching %d of %d files changed since '%s' or referencing changed types",
+                selected.size(), paths.size(), changedSince));
+        if (outputPath != null) {
+            // the output tree must be complete, e.g. after a clean
+            List<Path> missing = paths.stream().filter(p -> !selected.contains(p)).filter(p -> {
+                Path outputFile = getOutputFile(p);
+                return !Files.isRegularFile(outputFile) || !Files.isRegularFile(getStampFile(outputFile));
+            }).collect(Collectors.toList());
+            if (!missing.isEmpty()) {
+                LOGGER.info(String.format("Enriching %d unchanged files without output", missing.size()));
+                selected.addAll(missing);
+            }
+        }
+        return paths.stream().filter(selected::contains).collect(Collectors.toList());
+    }
+
+    /**
+     * Gets the name of the type declared in a source file by its file name.
+     *
+     * @param sourceFile The source file.
+     * @return the type name or <code>null</code> if the file is not a Java source file.
+     */
+    private static String getTypeName(Path sourceFile) {
+        String fileName = sourceFile.getFileName().toString();
+        return fileName.endsWith(JAVA_EXT) ? fileName.substring(0, fileName.length() - JAVA_EXT.length()) : null;
+    }
+
+    private List<Path> getSourceRoots() {
+        return sourcePaths.stream().map(s -> toPath(s).toAbsolutePath().normalize())
+                .map(p -> Files.isDirectory(p) ? p : p.getParent()).collect(Collectors.toList());
+    }
+
+    private Path getOutputFile(Path path) {
+        if (outputPath == null) {
+            return path;
+        }
+        Path absolutePath = path.toAbsolutePath().normalize();
+        // explicit files not below a source path are mirrored relative to their base source path
+        Path root = getSourceRoots().stream().filter(absolutePath::startsWith).findFirst()
+                .orElseGet(() -> getFileRoot(absolutePath));
+        return toPath(outputPath).resolve(root.relativize(absolutePath).toString());
+    }
+
+    private Path getOutputFileOfStamp(Path stampFile) {
+        Path stampRoot = toPath(outputPath).resolve(STAMP_DIR);
+        String relativePath = stampRoot.relativize(stampFile).toString();
+        return toPath(outputPath).resolve(relativePath.substring(0, relativePath.length() - STAMP_EXT.length()));
+    }
+
+    private Path getStampFile(Path outputFile) {
+        Path outputRoot = toPath(outputPath);
+        return outputRoot.resolve(STAMP_DIR).resolve(outputRoot.relativize(outputFile).toString() + STAMP_EXT);
+    }
+
+    private String getSourceKey(byte[] content, boolean candidate) {
+        return ResultCache.hash(content, ResultCache.getVersion().getBytes(StandardCharsets.UTF_8),
+                getOptionsKey().getBytes(StandardCharsets.UTF_8),
+                (candidate ? ENRICHED : COPIED).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String getContentHash(Path path) {
+        return contentHashes.computeIfAbsent(path.toAbsolutePath().normalize(), p -> {
+            try {
+                return Files.isRegularFile(p) ? ResultCache.hash(Files.readAllBytes(p)) : MISSING;
+            } catch (IOException e) {
+                return MISSING;
+            }
+        });
+    }
+
+    private boolean isUpToDate(Path outputFile, String sourceKey) throws IOException {
+        if (outputPath == null || !Files.isRegularFile(outputFile)) {
+            return false;
+        }
+        Path stampFile = getStampFile(outputFile);
+        if (!Files.isRegularFile(stampFile)) {
+            return false;
+        }
+        List<String> lines = Files.readAllLines(stampFile, StandardCharsets.UTF_8);
+        if (lines.size() < 2 || !lines.get(0).equals(sourceKey)) {
+            return false;
+        }
+        for (String line : lines.subList(2, lines.size())) {
+            String[] parts = line.split(STAMP_SEPARATOR, 2);
+            if (parts.length != 2 || !parts[0].equals(getContentHash(toPath(parts[1])))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeStamp(Path outputFile, Path path, String sourceKey, Collection<Path> referencedSources)
+            throws IOException {
+        if (outputPath == null) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add(sourceKey);
+        // the source the output belongs to
+        lines.add(path.toAbsolutePath().normalize().toString());
+        referencedSources.stream().map(p -> p.toAbsolutePath().normalize()).distinct().sorted()
+                .forEach(p -> lines.add(getContentHash(p) + STAMP_SEPARATOR + p.toString()));
+        Path stampFile = getStampFile(outputFile);
+        ResultCache.write(stampFile, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void deleteStamp(Path outputFile) throws IOException {
+        if (outputPath != null) {
+            Files.deleteIfExists(getStampFile(outputFile));
+        }
+    }
+
+    private void deleteStaleOutputs() {
+        Path outputRoot = toPath(outputPath);
+        if (!Files.isDirectory(outputRoot)) {
+            return;
+        }
+        Path stampRoot = outputRoot.resolve(STAMP_DIR);
+        // outputs of sources outside of the roots of this run are kept
+        List<Path> roots = new ArrayList<>(getSourceRoots());
+        roots.addAll(getFileRoots());
+        if (Files.isDirectory(stampRoot)) {
+            deleteStaleFiles(stampRoot, null, stampFile -> {
+                String source;
+                try {
+                    List<String> lines = Files.readAllLines(stampFile, StandardCharsets.UTF_8);
+                    source = lines.size() < 2 ? null : lines.get(1);
+                } catch (IOException e) {
+                    LOGGER.warn(String.format("Could not read stamp file '%s'.", stampFile.toString()), e);
+                    return false;
+                }
+                if (source == null) {
+                    return true;
+                }
+                Path sourceFile = toPath(source);
+                if (roots.stream().noneMatch(sourceFile::startsWith) || Files.exists(sourceFile)) {
+                    return false;
+                }
+                Path outputFile = getOutputFileOfStamp(stampFile);
+                LOGGER.info(String.format("Deleting stale output file: '%s'", outputFile.getFileName().toString()));
+                try {
+                    Files.deleteIfExists(outputFile);
+                } catch (IOException e) {
+                    LOGGER.warn(String.format("Could not delete stale output file '%s'.", outputFile.toString()), e);
+                }
+                return true;
+            });
+        }
+        // an output without a stamp is stale if no root of this run has its source
+        deleteStaleFiles(outputRoot, stampRoot, outputFile -> {
+            String relativePath = outputRoot.relativize(outputFile).toString();
+            return !Files.exists(getStampFile(outputFile))
+                    && roots.stream().noneMatch(r -> Files.exists(r.resolve(relativePath)));
+        });
+    }
+
+    private void deleteStaleFiles(Path root, Path skipped, Predicate<Path> stale) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return dir.equals(skipped) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path path,
+                                                 BasicFileAttributes attrs) {
+                    if (stale.test(path)) {
+                        LOGGER.info(String.format("Deleting stale output file: '%s'", path.getFileName().toString()));
+                        try {
+                            Files.deleteIfExists(path);
+                        } catch (IOException e) {
+                            LOGGER.warn(String.format("Could not delete stale output file '%s'.", path.toString()), e);
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    LOGGER.warn(String.format("Could not check output file '%s'.", file.toString()), exc);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                    if (!dir.equals(root)) {
+                        try (Stream<Path> entries = Files.list(dir)) {
+                            if (!entries.findAny().isPresent()) {
+                                Files.delete(dir);
+                            }
+                        } catch (IOException e) {
+                            LOGGER.warn(String.format("Could not delete empty output directory '%s'.", dir.toString()), e);
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.error("Could not delete stale output files.", e);
+            throw new RuntimeException("Could not delete stale output files.", e);
+        }
+    }
+
     private String getJavadocSummary(String javadoc) {
         String[] commentParts = javadoc.split(PARAGRAPH_START);
         return commentParts[0].trim();
@@ -300,13 +1238,71 @@ public class Enricher {
         return null;
     }
 
+    private String getOptionsKey() {
+        return HATEAOS_HAL_OPT + "=" + hateaos;
+    }
+
+    private boolean isCandidate(String source) {
+        if (annotationFilter == null && marker == null) {
+            return true;
+        }
+        return (annotationFilter != null && annotationFilter.matcher(source).find())
+                || (marker != null && source.contains(marker));
+    }
+
+    private void writeOutput(Path outputFile, String output) throws IOException {
+        if (Files.isRegularFile(outputFile)
+                && new String(Files.readAllBytes(outputFile), StandardCharsets.UTF_8).equals(output)) {
+            LOGGER.debug(String.format("Output file is unchanged: '%s'", outputFile.getFileName().toString()));
+            return;
+        }
+        Files.createDirectories(outputFile.toAbsolutePath().getParent());
+        // other files may read this file concurrently as a referenced type
+        ResultCache.write(outputFile, output.getBytes(StandardCharsets.UTF_8));
+    }
+
     private void handleSchema(Path path) throws IOException {
+        processedFiles.add(path);
+        Path outputFile = getOutputFile(path);
+        byte[] content = Files.readAllBytes(path);
+        String source = new String(content, StandardCharsets.UTF_8);
+        boolean candidate = isCandidate(source);
+        String sourceKey = getSourceKey(content, candidate);
+        if (isUpToDate(outputFile, sourceKey)) {
+            LOGGER.debug(String.format("Output file is up to date: '%s'", outputFile.getFileName().toString()));
+            return;
+        }
+        // the output is outdated until written
+        deleteStamp(outputFile);
+        if (!candidate) {
+            LOGGER.debug(String.format("Skipping file without candidate type: '%s'", path.getFileName().toString()));
+            if (outputPath != null) {
+                writeOutput(outputFile, source);
+                writeStamp(outputFile, path, sourceKey, Collections.emptyList());
+            }
+            return;
+        }
+        String cacheKey = null;
+        if (resultCache != null) {
+            cacheKey = resultCache.getKey(content, getOptionsKey());
+            ResultCache.CachedResult cachedResult = resultCache.get(cacheKey, path);
+            if (cachedResult != null) {
+                LOGGER.info(String.format("Using cached result for file: '%s'", path.getFileName().toString()));
+                writeOutput(outputFile, cachedResult.getOutput());
+                writeStamp(outputFile, path, sourceKey, cachedResult.getReferencedSources());
+                return;
+            }
+        }
         LOGGER.info(String.format("Handling file: '%s'", path.getFileName().toString()));
-        CompilationUnit compilationUnit;
-        try {
-            compilationUnit = JavaParser.parse(path.toFile());
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException("Could not find file.", e);
+        ParseResult<CompilationUnit> parseResult = parse(source);
+        if (!parseResult.isSuccessful()) {
+            addFailure(path, getProblemMessages(parseResult));
+            return;
+        }
+        CompilationUnit compilationUnit = parseResult.getResult().get();
+        compilationUnit.setData(REFERENCED_SOURCES, new HashSet<>());
+        if (fingerprintPath != null) {
+            compilationUnit.setData(MEMBER_FINGERPRINTS, MemberFingerprints.load(Paths.get(fingerprintPath), path));
         }
         String basePath = getBaseSourcePath(compilationUnit, path.toString());
 
@@ -323,9 +1319,18 @@ public class Enricher {
             ).forEach(
                     m -> addSchemaAnnotation(basePath, compilationUnit, m)
             );
-            try (FileWriter fileWriter = new FileWriter(path.toFile())) {
-                fileWriter.write(compilationUnit.toString());
-            }
+        }
+        if (fingerprintPath != null) {
+            compilationUnit.getData(MEMBER_FINGERPRINTS).save();
+        }
+        String output = compilationUnit.toString();
+        // the output tree must be complete, so also files without classes are copied
+        if (!classOrInterfaceDeclarations.isEmpty() || outputPath != null) {
+            writeOutput(outputFile, output);
+            writeStamp(outputFile, path, sourceKey, compilationUnit.getData(REFERENCED_SOURCES));
+        }
+        if (resultCache != null) {
+            resultCache.put(cacheKey, path, compilationUnit.getData(REFERENCED_SOURCES), output);
         }
     }
 
@@ -358,46 +1363,6 @@ public class Enricher {
         return classOrInterfaceDeclaration.getFieldByName(fieldName).isPresent();
     }
 
-    private void setSchemaMemberValue(NormalAnnotationExpr annotationExpr, String schemaProperty, boolean value) {
-        Optional<MemberValuePair> memberValuePairOptional = (annotationExpr.getPairs().stream().filter(
-                a -> a.getName().getIdentifier().equals(schemaProperty)
-        ).findFirst());
-        if (!memberValuePairOptional.isPresent()) {
-            annotationExpr.addPair(schemaProperty,
-                    new BooleanLiteralExpr(value));
-        } else {
-            memberValuePairOptional.get().setValue(new BooleanLiteralExpr(value));
-        }
-    }
-
-    private void setSchemaMemberValue(NormalAnnotationExpr annotationExpr, String schemaProperty, int value) {
-        Optional<MemberValuePair> memberValuePairOptional = (annotationExpr.getPairs().stream().filter(
-                a -> a.getName().getIdentifier().equals(schemaProperty)
-        ).findFirst());
-        if (!memberValuePairOptional.isPresent()) {
-            annotationExpr.addPair(schemaProperty,
-                    new IntegerLiteralExpr(value));
-        } else {
-            memberValuePairOptional.get().setValue(new IntegerLiteralExpr(value));
-        }
-    }
-
-    private void setSchemaMemberValue(NormalAnnotationExpr annotationExpr, String schemaProperty, String value) {
-        Optional<MemberValuePair> memberValuePairOptional = (annotationExpr.getPairs().stream().filter(
-                a -> a.getName().getIdentifier().equals(schemaProperty)
-        ).findFirst());
-        if (!memberValuePairOptional.isPresent()) {
-            if (value != null) {
-                annotationExpr.addPair(schemaProperty,
-                        new StringLiteralExpr(escapeString(value)));
-            }
-        } else {
-            if (value != null) {
-                memberValuePairOptional.get().setValue(new StringLiteralExpr(escapeString(value)));
-            }
-        }
-    }
-
     private String getFullClassName(CompilationUnit compilationUnit,
                                     String className) {
         if (className.contains(DOT)) {
@@ -426,19 +1391,205 @@ public class Enricher {
         return getFullClassName(compilationUnit, extent.getNameAsString());
     }
 
-    private File getSourceFile(String basePath, CompilationUnit compilationUnit, ClassOrInterfaceType extent) {
+    private Path getSourceFile(String basePath, CompilationUnit compilationUnit, ClassOrInterfaceType extent) {
         String className = getFullClassName(compilationUnit, extent);
         // get File
-        String sourcePath = basePath + className.replace('.', '/') + JAVA_EXT;
-        return new File(sourcePath);
+        String classPath = className.replace('.', '/') + JAVA_EXT;
+        Path sourceFile = toPath(basePath + classPath);
+        if (!Files.isRegularFile(sourceFile)) {
+            // try other source paths
+            for (String baseSourcePath : baseSourcePaths) {
+                Path otherSourceFile = toPath(baseSourcePath + classPath);
+                if (Files.isRegularFile(otherSourceFile)) {
+                    return otherSourceFile;
+                }
+            }
+        }
+        return sourceFile;
     }
 
-    protected TypeDeclaration parseClassOrInterfaceType(String basePath, CompilationUnit compilationUnit, ClassOrInterfaceType classOrInterfaceType) {
+    private static void addReferencedSource(CompilationUnit compilationUnit, Path sourceFile) {
+        if (compilationUnit.containsData(REFERENCED_SOURCES)) {
+            compilationUnit.getData(REFERENCED_SOURCES).add(sourceFile);
+        }
+        if (compilationUnit.containsData(MEMBER_REFERENCED_SOURCES)) {
+            compilationUnit.getData(MEMBER_REFERENCED_SOURCES).add(sourceFile);
+        }
+    }
+
+    private static String decapitalize(String name) {
+        return name.isEmpty() ? name : Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private Path getSuperclassSourceFile(String basePath, CompilationUnit compilationUnit,
+                                        ClassOrInterfaceType extendedType) {
+        try {
+            Path sourceFile = getSourceFile(basePath, compilationUnit, extendedType);
+            if (Files.isRegularFile(sourceFile)) {
+                return sourceFile;
+            }
+        } catch (RuntimeException e) {
+            // not resolvable
+        }
+        // e.g. a superclass of a library
+        LOGGER.debug(String.format("Superclass is not part of the sources: '%s'", extendedType.asString()));
+        return null;
+    }
+
+    private InheritedMembers getInheritedMembers(String basePath, CompilationUnit compilationUnit,
+                                                 ClassOrInterfaceDeclaration classOrInterfaceDeclaration,
+                                                 Set<Path> visited) {
+        InheritedMembers inheritedMembers = new InheritedMembers();
+        if (classOrInterfaceDeclaration.isInterface()) {
+            return inheritedMembers;
+        }
+        for (ClassOrInterfaceType extendedType : classOrInterfaceDeclaration.getExtendedTypes()) {
+            Path superclassSourceFile = getSuperclassSourceFile(basePath, compilationUnit, extendedType);
+            if (superclassSourceFile == null || !visited.add(superclassSourceFile.toAbsolutePath().normalize())) {
+                continue;
+            }
+            InheritedMembers superclassMembers = getSuperclassMembers(superclassSourceFile, visited);
+            inheritedMembers.members.putAll(superclassMembers.members);
+            inheritedMembers.sources.addAll(superclassMembers.sources);
+        }
+        return inheritedMembers;
+    }
+
+    private InheritedMembers getSuperclassMembers(Path sourceFile, Set<Path> visited) {
+        CompletableFuture<InheritedMembers> future = new CompletableFuture<>();
+        CompletableFuture<InheritedMembers> existing = superclassMembers.putIfAbsent(
+                sourceFile.toAbsolutePath().normalize(), future);
+        if (existing != null) {
+            return existing.join();
+        }
+        try {
+            InheritedMembers inheritedMembers = new InheritedMembers();
+            inheritedMembers.sources.add(sourceFile);
+            TypeDeclaration<?> typeDeclaration = typeCache.get(sourceFile, Enricher::parseFile);
+            if (typeDeclaration instanceof ClassOrInterfaceDeclaration) {
+                LOGGER.debug(String.format("Analysing superclass: '%s'", typeDeclaration.getNameAsString()));
+                ClassOrInterfaceDeclaration superclass = (ClassOrInterfaceDeclaration) typeDeclaration;
+                CompilationUnit superclassCompilationUnit = superclass.findCompilationUnit().orElseThrow(
+                        () -> new RuntimeException(String.format("Could not parse type: %s", superclass.getNameAsString())));
+                InheritedMembers superclassMembers = getInheritedMembers(
+                        getBaseSourcePath(superclassCompilationUnit, sourceFile.toString()),
+                        superclassCompilationUnit, superclass, visited);
+                inheritedMembers.members.putAll(superclassMembers.members);
+                inheritedMembers.sources.addAll(superclassMembers.sources);
+                for (FieldDeclaration fieldDeclaration : superclass.getFields()) {
+                    MemberInfo memberInfo = getMemberInfo(fieldDeclaration);
+                    for (VariableDeclarator variableDeclarator : fieldDeclaration.getVariables()) {
+                        inheritedMembers.members.put(variableDeclarator.getNameAsString(), memberInfo);
+                    }
+                }
+                for (MethodDeclaration methodDeclaration : superclass.getMethods()) {
+                    if (!checkIfMethodIsGetter(methodDeclaration)) {
+                        continue;
+                    }
+                    String propertyName = decapitalize(getFieldNameForMethod(methodDeclaration));
+                    if (!superclass.getFieldByName(propertyName).isPresent()) {
+                        // an overriding getter refines the inherited property
+                        MemberInfo memberInfo = getMemberInfo(methodDeclaration);
+                        MemberInfo inherited = inheritedMembers.members.get(propertyName);
+                        inheritedMembers.members.put(propertyName, inherited != null ? memberInfo.overlay(inherited) : memberInfo);
+                    }
+                }
+            }
+            future.complete(inheritedMembers);
+            return inheritedMembers;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private MemberInfo getInheritedMemberInfo(String basePath, CompilationUnit compilationUnit,
+                                              BodyDeclaration<?> bodyDeclaration) {
+        if (!bodyDeclaration.isMethodDeclaration()) {
+            return null;
+        }
+        String fieldName = getFieldNameForMethod(bodyDeclaration.asMethodDeclaration());
+        Optional<ClassOrInterfaceDeclaration> classOrInterfaceDeclaration = bodyDeclaration.getParentNode()
+                .filter(n -> n instanceof ClassOrInterfaceDeclaration).map(n -> (ClassOrInterfaceDeclaration) n);
+        if (fieldName == null || !classOrInterfaceDeclaration.isPresent()
+                || classOrInterfaceDeclaration.get().getFieldByName(decapitalize(fieldName)).isPresent()) {
+            return null;
+        }
+        InheritedMembers inheritedMembers = getInheritedMembers(basePath, compilationUnit,
+                classOrInterfaceDeclaration.get(), new HashSet<>());
+        // also a property added later to a superclass changes the result
+        inheritedMembers.sources.forEach(s -> addReferencedSource(compilationUnit, s));
+        return inheritedMembers.members.get(decapitalize(fieldName));
+    }
+
+    private MemberInfo getMemberInfo(BodyDeclaration<?> bodyDeclaration) {
+        MemberInfo memberInfo = new MemberInfo();
+        memberInfo.javadoc = getJavadoc(bodyDeclaration);
+        if (!bodyDeclaration.isFieldDeclaration() && !bodyDeclaration.isMethodDeclaration()) {
+            return memberInfo;
+        }
+        AnnotationExpr annotationExpr = getAnnotation(bodyDeclaration, NOT_EMPTY_ANNOTATION);
+        if (annotationExpr != null) {
+            memberInfo.required = true;
+            memberInfo.minSize = 1;
+        }
+        annotationExpr = getAnnotation(bodyDeclaration, NOT_NULL_ANNOTATION);
+        if (annotationExpr != null) {
+            memberInfo.required = true;
+        }
+
+        annotationExpr = getAnnotation(bodyDeclaration, MIN_ANNOTATION);
+        if (annotationExpr != null) {
+            Expression value = getAnnotationValue(annotationExpr, VALUE_PROP);
+            if (value != null) {
+                memberInfo.min = value.asIntegerLiteralExpr().asInt();
+            }
+        }
+        annotationExpr = getAnnotation(bodyDeclaration, MAX_ANNOTATION);
+        if (annotationExpr != null) {
+            Expression value = getAnnotationValue(annotationExpr, VALUE_PROP);
+            if (value != null) {
+                memberInfo.max = value.asIntegerLiteralExpr().asInt();
+            }
+        }
+
+        annotationExpr = getAnnotation(bodyDeclaration, COLUMN_ANNOTATION);
+        if (annotationExpr != null) {
+            Expression nullable = getAnnotationValue(annotationExpr, COLUMN_NULLABLE);
+            if (nullable != null) {
+                memberInfo.required = nullable.asBooleanLiteralExpr().getValue();
+            }
+            Expression length = getAnnotationValue(annotationExpr, COLUMN_LENGTH_PROP);
+            if (length != null) {
+                memberInfo.maxSize = length.asIntegerLiteralExpr().asInt();
+            }
+        }
+        annotationExpr = getAnnotation(bodyDeclaration, SIZE_ANNOTATION);
+        if (annotationExpr != null) {
+            Expression value = getAnnotationValue(annotationExpr, SIZE_MIN_PROP);
+            if (value != null) {
+                memberInfo.minSize = value.asIntegerLiteralExpr().asInt();
+            }
 
-        CompilationUnit newCompilationUnit = parseFile(getSourceFile(basePath, compilationUnit, classOrInterfaceType));
-        return newCompilationUnit.findFirst(TypeDeclaration.class).
-                orElseThrow(() -> new RuntimeException(
-                        String.format("Could not parse type: %s", classOrInterfaceType.asString())));
+            value = getAnnotationValue(annotationExpr, SIZE_MAX_PROP);
+            if (value != null) {
+                // column has precedence
+                if (memberInfo.maxSize < 0) {
+                    memberInfo.maxSize = value.asIntegerLiteralExpr().asInt();
+                }
+            }
+        }
+        return memberInfo;
+    }
+
+    protected TypeDeclaration parseClassOrInterfaceType(String basePath, CompilationUnit compilationUnit, ClassOrInterfaceType classOrInterfaceType) {
+        Path sourceFile = getSourceFile(basePath, compilationUnit, classOrInterfaceType);
+        addReferencedSource(compilationUnit, sourceFile);
+        TypeDeclaration typeDeclaration = typeCache.get(sourceFile, Enricher::parseFile);
+        if (typeDeclaration == null) {
+            throw new RuntimeException(String.format("Could not parse type: %s", classOrInterfaceType.asString()));
+        }
+        return typeDeclaration;
     }
 
     private boolean isEmbedded(String basePath, CompilationUnit compilationUnit, Type propertyClassOrInterfaceType) {
@@ -463,7 +1614,7 @@ public class Enricher {
         return extendTypeDeclaration.isEnumDeclaration();
     }
 
-    private String getSimpleNameFromClass(String fqClassName) {
+    private static String getSimpleNameFromClass(String fqClassName) {
         String[] packages = fqClassName.split("\\.");
         return packages[packages.length - 1];
     }
@@ -533,9 +1684,94 @@ public class Enricher {
                 !isSimpleType(basePath, compilationUnit, commonType.asClassOrInterfaceType().getTypeArguments().get().get(0));
     }
 
+    private String getMemberKey(BodyDeclaration<?> bodyDeclaration) {
+        if (bodyDeclaration.isTypeDeclaration()) {
+            return bodyDeclaration.asTypeDeclaration().getNameAsString();
+        }
+        String typeName = bodyDeclaration.getParentNode().filter(n -> n instanceof TypeDeclaration)
+                .map(n -> ((TypeDeclaration<?>) n).getNameAsString()).orElse(EMPTY_STRING);
+        if (bodyDeclaration.isFieldDeclaration()) {
+            return typeName + "#" + bodyDeclaration.asFieldDeclaration().getVariable(0).getNameAsString();
+        }
+        return typeName + "#" + bodyDeclaration.asMethodDeclaration().getNameAsString() + "()";
+    }
+
+    private String getMemberFingerprint(CompilationUnit compilationUnit, BodyDeclaration<?> bodyDeclaration,
+                                        String memberKey) {
+        List<String> inputs = new ArrayList<>();
+        inputs.add(ResultCache.getVersion());
+        inputs.add(getOptionsKey());
+        inputs.add(memberKey);
+        // the imports and the package determine the referenced types
+        inputs.add(compilationUnit.getPackageDeclaration().map(p -> p.getName().asString()).orElse(EMPTY_STRING));
+        compilationUnit.getImports().forEach(i -> inputs.add(i.toString()));
+        inputs.add(bodyDeclaration.getComment().map(Comment::getContent).orElse(EMPTY_STRING));
+        bodyDeclaration.getAnnotations().stream().filter(a -> !a.getName().getIdentifier().equals(SCHEMA_ANNOTATION_SIMPLE_NAME))
+                .forEach(a -> inputs.add(a.toString()));
+        if (bodyDeclaration.isFieldDeclaration()) {
+            inputs.add(bodyDeclaration.asFieldDeclaration().getVariable(0).getType().asString());
+        }
+        if (bodyDeclaration.isMethodDeclaration()) {
+            inputs.add(bodyDeclaration.asMethodDeclaration().getType().asString());
+            // a getter without a field of its class inherits from the superclasses
+            bodyDeclaration.getParentNode().filter(n -> n instanceof ClassOrInterfaceDeclaration)
+                    .map(n -> (ClassOrInterfaceDeclaration) n).ifPresent(c -> {
+                c.getExtendedTypes().forEach(t -> inputs.add("extends " + t.asString()));
+                c.getFields().forEach(f -> f.getVariables().forEach(v -> inputs.add("field " + v.getNameAsString())));
+            });
+        }
+        return ResultCache.hash(inputs.stream().map(i -> i.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new));
+    }
+
     private void addSchemaAnnotation(String basePath, CompilationUnit compilationUnit,
                                      BodyDeclaration<?> bodyDeclaration) {
-        String javadoc = getJavadoc(bodyDeclaration);
+        SchemaModel schemaModel = null;
+        MemberFingerprints memberFingerprints = compilationUnit.containsData(MEMBER_FINGERPRINTS) ?
+                compilationUnit.getData(MEMBER_FINGERPRINTS) : null;
+        String memberKey = null;
+        String fingerprint = null;
+        if (memberFingerprints != null) {
+            memberKey = getMemberKey(bodyDeclaration);
+            fingerprint = getMemberFingerprint(compilationUnit, bodyDeclaration, memberKey);
+            schemaModel = memberFingerprints.get(memberKey, fingerprint);
+            if (schemaModel != null) {
+                LOGGER.debug(String.format("Member is up to date: '%s'", memberKey));
+                // the referenced sources are still needed for the result cache
+                compilationUnit.getData(REFERENCED_SOURCES).addAll(memberFingerprints.getReferencedSources(memberKey));
+            }
+        }
+        if (schemaModel == null) {
+            compilationUnit.setData(MEMBER_REFERENCED_SOURCES, new HashSet<>());
+            schemaModel = createSchemaModel(basePath, compilationUnit, bodyDeclaration);
+            if (memberFingerprints != null) {
+                memberFingerprints.put(memberKey, fingerprint, compilationUnit.getData(MEMBER_REFERENCED_SOURCES), schemaModel);
+            }
+        }
+        NormalAnnotationExpr schemaAnnotationExpr = bodyDeclaration.getAnnotationByName(SCHEMA_ANNOTATION_SIMPLE_NAME).map(Expression::asNormalAnnotationExpr)
+                .orElse(null);
+        if (schemaAnnotationExpr == null) {
+            schemaAnnotationExpr = bodyDeclaration.addAndGetAnnotation(SCHEMA_ANNOTATION_CLASS).asNormalAnnotationExpr();
+        }
+        schemaModel.applyTo(schemaAnnotationExpr);
+    }
+
+    /**
+     * Computes the @Schema annotation members of a type, field or getter.
+     *
+     * @param basePath        The base source path for resolving referenced types.
+     * @param compilationUnit The compilation unit containing the declaration.
+     * @param bodyDeclaration The type, field or getter.
+     * @return the schema model.
+     */
+    protected SchemaModel createSchemaModel(String basePath, CompilationUnit compilationUnit,
+                                            BodyDeclaration<?> bodyDeclaration) {
+        SchemaModel schemaModel = new SchemaModel();
+        MemberInfo memberInfo = getMemberInfo(bodyDeclaration);
+        MemberInfo inheritedMemberInfo = getInheritedMemberInfo(basePath, compilationUnit, bodyDeclaration);
+        if (inheritedMemberInfo != null) {
+            memberInfo = memberInfo.overlay(inheritedMemberInfo);
+        }
+        String javadoc = memberInfo.javadoc;
         String summary = SUMMARY;
         String description = DESCRIPTION;
         if (javadoc != null) {
@@ -592,76 +1828,20 @@ public class Enricher {
             }
         }
 
-        NormalAnnotationExpr schemaAnnotationExpr = bodyDeclaration.getAnnotationByName(SCHEMA_ANNOTATION_SIMPLE_NAME).map(Expression::asNormalAnnotationExpr)
-                .orElse(null);
-        if (schemaAnnotationExpr == null) {
-            schemaAnnotationExpr = bodyDeclaration.addAndGetAnnotation(SCHEMA_ANNOTATION_CLASS).asNormalAnnotationExpr();
-        }
-        setSchemaMemberValue(schemaAnnotationExpr, SCHEMA_TITLE, summary);
+        schemaModel.setTitle(escapeString(summary));
 
         if (bodyDeclaration.isFieldDeclaration() || bodyDeclaration.isMethodDeclaration()) {
-            boolean required = false;
-            int maxSize = -1;
-            int minSize = -1;
-            int max = -1;
-            int min = -1;
-            AnnotationExpr annotationExpr = getAnnotation(bodyDeclaration, NOT_EMPTY_ANNOTATION);
-            if (annotationExpr != null) {
-                required = true;
-                minSize = 1;
-            }
-            annotationExpr = getAnnotation(bodyDeclaration, NOT_NULL_ANNOTATION);
-            if (annotationExpr != null) {
-                required = true;
-            }
-
-            annotationExpr = getAnnotation(bodyDeclaration, MIN_ANNOTATION);
-            if (annotationExpr != null) {
-                Expression value = getAnnotationValue(annotationExpr, VALUE_PROP);
-                if (value != null) {
-                    min = value.asIntegerLiteralExpr().asInt();
-                }
-            }
-            annotationExpr = getAnnotation(bodyDeclaration, MAX_ANNOTATION);
-            if (annotationExpr != null) {
-                Expression value = getAnnotationValue(annotationExpr, VALUE_PROP);
-                if (value != null) {
-                    max = value.asIntegerLiteralExpr().asInt();
-                }
-            }
-
-            annotationExpr = getAnnotation(bodyDeclaration, COLUMN_ANNOTATION);
-            if (annotationExpr != null) {
-                Expression nullable = getAnnotationValue(annotationExpr, COLUMN_NULLABLE);
-                if (nullable != null) {
-                    required = nullable.asBooleanLiteralExpr().getValue();
-                }
-                Expression length = getAnnotationValue(annotationExpr, COLUMN_LENGTH_PROP);
-                if (length != null) {
-                    maxSize = length.asIntegerLiteralExpr().asInt();
-                }
-            }
-            annotationExpr = getAnnotation(bodyDeclaration, SIZE_ANNOTATION);
-            if (annotationExpr != null) {
-                Expression value = getAnnotationValue(annotationExpr, SIZE_MIN_PROP);
-                if (value != null) {
-                    minSize = value.asIntegerLiteralExpr().asInt();
-                }
-
-                value = getAnnotationValue(annotationExpr, SIZE_MAX_PROP);
-                if (value != null) {
-                    // column has precedence
-                    if (maxSize < 0) {
-                        maxSize = value.asIntegerLiteralExpr().asInt();
-                    }
-                }
-            }
+            boolean required = Boolean.TRUE.equals(memberInfo.required);
+            int maxSize = memberInfo.maxSize;
+            int minSize = memberInfo.minSize;
+            int max = memberInfo.max;
+            int min = memberInfo.min;
 
             // add constraints
             description += UL_START;
             if (required) {
                 description += LI_START+"This value is required."+LI_END;
-                setSchemaMemberValue(schemaAnnotationExpr, SCHEMA_REQUIRED, required);
+                schemaModel.setRequired(true);
             }
             // length for String, byte array
             if (commonType.asString().endsWith(String.class.getSimpleName())
@@ -669,20 +1849,20 @@ public class Enricher {
                     || commonType.isArrayType()) {
                 if (minSize > -1) {
                     description += String.format(LI_START+"The minimum length is %d."+LI_END, minSize);
-                    setSchemaMemberValue(schemaAnnotationExpr, SCHEMA_MIN_LENGTH, minSize);
+                    schemaModel.setMinLength(minSize);
                 }
                 if (maxSize > -1) {
                     description += String.format(LI_START+"The maximum length is %d."+LI_END, maxSize);
-                    setSchemaMemberValue(schemaAnnotationExpr, SCHEMA_MAX_LENGTH, maxSize);
+                    schemaModel.setMaxLength(maxSize);
                 }
             }
             if (max > -1) {
                 description += String.format(LI_START+"The maximum value is %d."+LI_END, max);
-                setSchemaMemberValue(schemaAnnotationExpr, SCHEMA_MAX, "" + max + "");
+                schemaModel.setMaximum(String.valueOf(max));
             }
             if (min > -1) {
                 description += String.format(LI_START+"The minimum value is %d."+LI_END, min);
-                setSchemaMemberValue(schemaAnnotationExpr, SCHEMA_MIN, "" + min + "");
+                schemaModel.setMinimum(String.valueOf(min));
             }
             if (description.endsWith(UL_START)) {
                 description = description.substring(0, description.length()-UL_START.length());
@@ -692,7 +1872,8 @@ public class Enricher {
             }
         }
 
-        setSchemaMemberValue(schemaAnnotationExpr, SCHEMA_DESCRIPTION, description);
+        schemaModel.setDescription(escapeString(description));
+        return schemaModel;
     }
 
     private Expression getAnnotationValue(AnnotationExpr annotationExpr, String property) {
@@ -0,0 +1,138 @@
+package de.ohmesoftware.javadoctoopenapischema;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of an enrichment run.
+ *
+ * @author <a href="mailto:k_o_@users.sourceforge.net">Karsten Ohme
+ * (k_o_@users.sourceforge.net)</a>
+ */
+public class EnrichmentResult {
+
+    /**
+     * A file which could not be enriched.
+     */
+    public static class Failure {
+
+        /**
+         * The file.
+         */
+        private final Path file;
+
+        /**
+         * The diagnostic messages.
+         */
+        private final List<String> messages;
+
+        /**
+         * Constructor.
+         *
+         * @param file     The file.
+         * @param messages The diagnostic messages.
+         */
+        Failure(Path file, List<String> messages) {
+            this.file = file;
+            this.messages = Collections.unmodifiableList(messages);
+        }
+
+        /**
+         * Gets the file.
+         *
+         * @return the file.
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * Gets the diagnostic messages, e.g. the parse problems or the unresolvable type.
+         *
+         * @return the messages.
+         */
+        public List<String> getMessages() {
+            return messages;
+        }
+
+        @Override
+        public String toString() {
+            return file + ": " + String.join("; ", messages);
+        }
+    }
+
+    /**
+     * The processed files.
+     */
+    private final List<Path> processedFiles;
+
+    /**
+     * The files which could not be enriched.
+     */
+    private final List<Failure> failures;
+
+    /**
+     * The duration in milliseconds.
+     */
+    private final long duration;
+
+    /**
+     * Constructor.
+     *
+     * @param processedFiles The processed files.
+     * @param failures       The files which could not be enriched.
+     * @param duration       The duration in milliseconds.
+     */
+    EnrichmentResult(List<Path> processedFiles, List<Failure> failures, long duration) {
+        this.processedFiles = Collections.unmodifiableList(processedFiles);
+        this.failures = Collections.unmodifiableList(failures);
+        this.duration = duration;
+    }
+
+    /**
+     * Gets the processed files. These are the files selected by the source paths, files and filters, also if the output
+     * was up to date, taken from the cache or the file failed.
+     *
+     * @return the processed files.
+     */
+    public List<Path> getProcessedFiles() {
+        return processedFiles;
+    }
+
+    /**
+     * Gets the files which could not be enriched. The other files are enriched regardless of these.
+     *
+     * @return the failures ordered by the file.
+     */
+    public List<Failure> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Checks if all files are enriched.
+     *
+     * @return <code>true</code> if no file failed.
+     */
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * Gets the duration of the run.
+     *
+     * @return the duration in milliseconds.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return "EnrichmentResult{" +
+                "processedFiles=" + processedFiles.size() +
+                ", failures=" + failures.size() +
+                ", duration=" + duration +
+                '}';
+    }
+}
@@ -0,0 +1,135 @@
+package de.ohmesoftware.javadoctoopenapischema;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived session for repeated enrichment runs in one JVM, e.g. by an IDE plugin or a code generator.
+ * <p>
+ * The session keeps the parsed referenced types and the worker threads between the runs. Runs on different source
+ * paths or files can be executed concurrently. The configuration is taken from an {@link Enricher} when the session is
+ * created, its source paths and files are not used.
+ * </p>
+ * <p>
+ * The runs may share the output directory, so outputs whose source was removed are not deleted by a run.
+ * </p>
+ * <p>
+ * Cached types are validated by the modification time and size of their source. If a source is changed without
+ * updating these, e.g. by an editor buffer written in the same timestamp granularity, it must be invalidated
+ * explicitly.
+ * </p>
+ *
+ * @author <a href="mailto:k_o_@users.sourceforge.net">Karsten Ohme
+ * (k_o_@users.sourceforge.net)</a>
+ */
+public class EnrichmentSession implements AutoCloseable {
+
+    /**
+     * The enricher holding the configuration.
+     */
+    private final Enricher configuration;
+
+    /**
+     * The parsed referenced types.
+     */
+    private final TypeCache typeCache = new TypeCache();
+
+    /**
+     * The executor processing the files of all runs.
+     */
+    private final ExecutorService workerExecutorService;
+
+    /**
+     * The executor running the runs. The runs wait for their files, so they must not block the workers.
+     */
+    private final ExecutorService runExecutorService;
+
+    /**
+     * Constructor.
+     *
+     * @param configuration The enricher holding the configuration. Later changes of the enricher are not used.
+     * @param maxThreads    The maximum number of files processed concurrently by all runs.
+     */
+    public EnrichmentSession(Enricher configuration, int maxThreads) {
+        this.configuration = new Enricher(configuration, Collections.emptyList(), null, typeCache, null);
+        this.workerExecutorService = AdaptiveScheduler.createExecutorService(maxThreads);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.runExecutorService = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "enrichment-session-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Constructor. The number of files processed concurrently is limited to the number of processors.
+     *
+     * @param configuration The enricher holding the configuration. Later changes of the enricher are not used.
+     */
+    public EnrichmentSession(Enricher configuration) {
+        this(configuration, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Enriches source paths.
+     *
+     * @param sourcePaths The source paths to enrich.
+     * @return the result.
+     */
+    public CompletableFuture<EnrichmentResult> enrich(List<String> sourcePaths) {
+        return enrich(sourcePaths, null);
+    }
+
+    /**
+     * Enriches source paths and files. Referenced types are resolved across the source paths and the source paths of
+     * the files.
+     *
+     * @param sourcePaths The source paths to enrich.
+     * @param files       Explicit files to enrich in addition to the source paths or <code>null</code>.
+     * @return the result. The future is completed exceptionally if the run fails.
+     */
+    public CompletableFuture<EnrichmentResult> enrich(List<String> sourcePaths, List<String> files) {
+        Enricher enricher = new Enricher(configuration, sourcePaths, files, typeCache, workerExecutorService);
+        return CompletableFuture.supplyAsync(enricher::enrich, runExecutorService);
+    }
+
+    /**
+     * Invalidates the cached type of a changed source file.
+     *
+     * @param sourceFile The source file.
+     */
+    public void invalidate(Path sourceFile) {
+        typeCache.invalidate(sourceFile);
+    }
+
+    /**
+     * Invalidates all cached types.
+     */
+    public void invalidateAll() {
+        typeCache.invalidateAll();
+    }
+
+    /**
+     * Closes the session. Waits until the running runs are completed.
+     */
+    @Override
+    public void close() {
+        runExecutorService.shutdown();
+        try {
+            while (!runExecutorService.awaitTermination(1, TimeUnit.SECONDS)) {
+                // wait for the running runs
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            workerExecutorService.shutdown();
+        }
+    }
+
+}
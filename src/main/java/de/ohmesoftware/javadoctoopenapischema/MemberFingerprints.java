@@ -0,0 +1,229 @@
+package de.ohmesoftware.javadoctoopenapischema;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * The fingerprints of the members of a source file kept in a sidecar file.
+ * <p>
+ * A fingerprint is the hash of the inputs of a member, i.e. the Javadoc, the annotations, the type and the options.
+ * Together with the fingerprint the computed schema model and the sources read for it are stored. If the inputs and
+ * the content of these sources are unchanged the stored schema model is reused.
+ * </p>
+ *
+ * @author <a href="mailto:k_o_@users.sourceforge.net">Karsten Ohme
+ * (k_o_@users.sourceforge.net)</a>
+ */
+class MemberFingerprints {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemberFingerprints.class);
+
+    private static final String SIDECAR_EXT = ".properties";
+    private static final String FINGERPRINT = ".fingerprint";
+    private static final String DEPENDENCIES = ".dependencies";
+    private static final String DEPENDENCIES_HASH = ".dependenciesHash";
+    private static final String TITLE = ".title";
+    private static final String DESCRIPTION = ".description";
+    private static final String REQUIRED = ".required";
+    private static final String MIN_LENGTH = ".minLength";
+    private static final String MAX_LENGTH = ".maxLength";
+    private static final String MINIMUM = ".minimum";
+    private static final String MAXIMUM = ".maximum";
+    private static final String DEPENDENCY_SEPARATOR = "\n";
+    private static final String MISSING = "missing";
+
+    /**
+     * The source file.
+     */
+    private final Path sourceFile;
+
+    /**
+     * The sidecar file.
+     */
+    private final Path sidecarFile;
+
+    /**
+     * The stored fingerprints.
+     */
+    private final Properties stored;
+
+    /**
+     * The fingerprints of the current run. Members no longer existing are dropped.
+     */
+    private final Properties current = new Properties();
+
+    /**
+     * The content hashes of the sources read by the members.
+     */
+    private final Map<Path, String> contentHashes = new HashMap<>();
+
+    private MemberFingerprints(Path sourceFile, Path sidecarFile, Properties stored) {
+        this.sourceFile = sourceFile;
+        this.sidecarFile = sidecarFile;
+        this.stored = stored;
+    }
+
+    /**
+     * Loads the fingerprints of a source file.
+     *
+     * @param fingerprintDir The directory of the sidecar files.
+     * @param sourceFile     The source file.
+     * @return the fingerprints.
+     */
+    static MemberFingerprints load(Path fingerprintDir, Path sourceFile) {
+        Path sidecarFile = fingerprintDir.resolve(ResultCache.hash(
+                sourceFile.toAbsolutePath().normalize().toUri().toString().getBytes(StandardCharsets.UTF_8)) + SIDECAR_EXT);
+        Properties stored = new Properties();
+        if (Files.isRegularFile(sidecarFile)) {
+            try (Reader reader = Files.newBufferedReader(sidecarFile, StandardCharsets.UTF_8)) {
+                stored.load(reader);
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Could not read fingerprints of file '%s'.", sourceFile.getFileName().toString()), e);
+                stored.clear();
+            }
+        }
+        return new MemberFingerprints(sourceFile, sidecarFile, stored);
+    }
+
+    /**
+     * Gets the stored schema model of a member if its fingerprint and the content of the sources read for it are
+     * unchanged.
+     *
+     * @param memberKey   The key of the member.
+     * @param fingerprint The fingerprint of the inputs of the member.
+     * @return the schema model or <code>null</code> if the member must be computed.
+     */
+    SchemaModel get(String memberKey, String fingerprint) {
+        if (!fingerprint.equals(stored.getProperty(memberKey + FINGERPRINT))) {
+            return null;
+        }
+        List<Path> dependencies = getDependencies(stored.getProperty(memberKey + DEPENDENCIES));
+        if (!getDependenciesHash(dependencies).equals(stored.getProperty(memberKey + DEPENDENCIES_HASH))) {
+            return null;
+        }
+        SchemaModel schemaModel = new SchemaModel();
+        schemaModel.setTitle(stored.getProperty(memberKey + TITLE));
+        schemaModel.setDescription(stored.getProperty(memberKey + DESCRIPTION));
+        String value = stored.getProperty(memberKey + REQUIRED);
+        schemaModel.setRequired(value == null ? null : Boolean.valueOf(value));
+        value = stored.getProperty(memberKey + MIN_LENGTH);
+        schemaModel.setMinLength(value == null ? null : Integer.valueOf(value));
+        value = stored.getProperty(memberKey + MAX_LENGTH);
+        schemaModel.setMaxLength(value == null ? null : Integer.valueOf(value));
+        schemaModel.setMinimum(stored.getProperty(memberKey + MINIMUM));
+        schemaModel.setMaximum(stored.getProperty(memberKey + MAXIMUM));
+        copy(memberKey, stored, current);
+        return schemaModel;
+    }
+
+    /**
+     * Gets the sources read for a member by its last computation.
+     *
+     * @param memberKey The key of the member.
+     * @return the sources.
+     */
+    List<Path> getReferencedSources(String memberKey) {
+        return getDependencies(current.getProperty(memberKey + DEPENDENCIES));
+    }
+
+    /**
+     * Stores the schema model of a member.
+     *
+     * @param memberKey    The key of the member.
+     * @param fingerprint  The fingerprint of the inputs of the member.
+     * @param dependencies The sources read for computing the member.
+     * @param schemaModel  The computed schema model.
+     */
+    void put(String memberKey, String fingerprint, Collection<Path> dependencies, SchemaModel schemaModel) {
+        List<Path> sortedDependencies = new ArrayList<>(new TreeSet<>(dependencies));
+        current.setProperty(memberKey + FINGERPRINT, fingerprint);
+        StringBuilder dependenciesValue = new StringBuilder();
+        for (Path dependency : sortedDependencies) {
+            if (dependenciesValue.length() > 0) {
+                dependenciesValue.append(DEPENDENCY_SEPARATOR);
+            }
+            dependenciesValue.append(dependency.toString());
+        }
+        current.setProperty(memberKey + DEPENDENCIES, dependenciesValue.toString());
+        current.setProperty(memberKey + DEPENDENCIES_HASH, getDependenciesHash(sortedDependencies));
+        setProperty(memberKey + TITLE, schemaModel.getTitle());
+        setProperty(memberKey + DESCRIPTION, schemaModel.getDescription());
+        setProperty(memberKey + REQUIRED, schemaModel.getRequired());
+        setProperty(memberKey + MIN_LENGTH, schemaModel.getMinLength());
+        setProperty(memberKey + MAX_LENGTH, schemaModel.getMaxLength());
+        setProperty(memberKey + MINIMUM, schemaModel.getMinimum());
+        setProperty(memberKey + MAXIMUM, schemaModel.getMaximum());
+    }
+
+    /**
+     * Writes the fingerprints of the current run to the sidecar file if changed.
+     */
+    void save() {
+        if (current.equals(stored)) {
+            return;
+        }
+        try {
+            Files.createDirectories(sidecarFile.getParent());
+            try (Writer writer = Files.newBufferedWriter(sidecarFile, StandardCharsets.UTF_8)) {
+                current.store(writer, null);
+            }
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not write fingerprints of file '%s'.", sourceFile.getFileName().toString()), e);
+        }
+    }
+
+    private void setProperty(String key, Object value) {
+        if (value != null) {
+            current.setProperty(key, value.toString());
+        }
+    }
+
+    private static void copy(String memberKey, Properties from, Properties to) {
+        String prefix = memberKey + ".";
+        for (String key : from.stringPropertyNames()) {
+            if (key.startsWith(prefix) && key.indexOf('.', prefix.length()) < 0) {
+                to.setProperty(key, from.getProperty(key));
+            }
+        }
+    }
+
+    private List<Path> getDependencies(String value) {
+        List<Path> dependencies = new ArrayList<>();
+        if (value != null && !value.isEmpty()) {
+            for (String dependency : value.split(DEPENDENCY_SEPARATOR)) {
+                dependencies.add(sourceFile.getFileSystem().getPath(dependency));
+            }
+        }
+        return dependencies;
+    }
+
+    private String getDependenciesHash(List<Path> dependencies) {
+        List<byte[]> parts = new ArrayList<>();
+        for (Path dependency : dependencies) {
+            parts.add(dependency.toString().getBytes(StandardCharsets.UTF_8));
+            parts.add(contentHashes.computeIfAbsent(dependency, d -> {
+                try {
+                    return Files.isRegularFile(d) ? ResultCache.hash(Files.readAllBytes(d)) : MISSING;
+                } catch (IOException e) {
+                    return MISSING;
+                }
+            }).getBytes(StandardCharsets.UTF_8));
+        }
+        return ResultCache.hash(parts.toArray(new byte[0][]));
+    }
+
+}
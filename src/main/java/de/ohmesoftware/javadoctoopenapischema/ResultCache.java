@@ -0,0 +1,403 @@
+package de.ohmesoftware.javadoctoopenapischema;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Content addressed cache of enriched sources which can be shared by several workspaces and parallel jobs on one machine.
+ * <p>
+ * An entry is keyed by the hash of the source content, the enricher version and the options. Since the enrichment
+ * depends also on the types referenced by a source, the relative paths of the referenced sources are stored under this
+ * key and the content hashes of these sources are part of the key of the enriched output.
+ * </p>
+ * <p>
+ * Entries are written to a temporary file and moved atomically into place, so readers never see partial entries.
+ * The size of the cache is tracked in a file updated under a file lock. The least recently used entries are evicted
+ * when the cache exceeds its maximum size, only then the cache directory is listed.
+ * </p>
+ *
+ * @author <a href="mailto:k_o_@users.sourceforge.net">Karsten Ohme
+ * (k_o_@users.sourceforge.net)</a>
+ */
+class ResultCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultCache.class);
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String VERSION_RESOURCE = "/javadoctoopenapischema.properties";
+    private static final String VERSION_PROP = "version";
+    private static final String UNKNOWN_VERSION = "unknown";
+    private static final String DEPENDENCIES_DIR = "dependencies";
+    private static final String ENTRIES_DIR = "entries";
+    private static final String LOCK_FILE = ".lock";
+    private static final String SIZE_FILE = ".size";
+    private static final String TMP_EXT = ".tmp";
+    private static final String MISSING = "missing";
+    private static final String SEPARATOR = "\n";
+
+    /**
+     * Fraction of the maximum size the cache is shrunk to by an eviction.
+     */
+    private static final double EVICTION_TARGET = 0.9;
+
+    private static final String VERSION = readVersion();
+
+    /**
+     * The monitors of the cache directories. A file lock is held by the JVM, so the caches of one JVM using the same
+     * directory must be serialized before locking the file.
+     */
+    private static final Map<Path, Object> DIRECTORY_MONITORS = new ConcurrentHashMap<>();
+
+    /**
+     * A cached enriched output with the sources read for it.
+     */
+    static class CachedResult {
+
+        /**
+         * The enriched output.
+         */
+        private final String output;
+
+        /**
+         * The sources read for the enrichment.
+         */
+        private final List<Path> referencedSources;
+
+        private CachedResult(String output, List<Path> referencedSources) {
+            this.output = output;
+            this.referencedSources = referencedSources;
+        }
+
+        /**
+         * Gets the enriched output.
+         *
+         * @return the output.
+         */
+        String getOutput() {
+            return output;
+        }
+
+        /**
+         * Gets the sources read for the enrichment.
+         *
+         * @return the referenced sources.
+         */
+        List<Path> getReferencedSources() {
+            return referencedSources;
+        }
+    }
+
+    /**
+     * The cache directory.
+     */
+    private final Path cacheDir;
+
+    /**
+     * The maximum size of the cache in bytes.
+     */
+    private final long maxSize;
+
+    /**
+     * Constructor.
+     *
+     * @param cacheDir The cache directory.
+     * @param maxSize  The maximum size of the cache in bytes.
+     */
+    ResultCache(Path cacheDir, long maxSize) {
+        this.cacheDir = cacheDir;
+        this.maxSize = maxSize;
+    }
+
+    private static String readVersion() {
+        try (InputStream inputStream = ResultCache.class.getResourceAsStream(VERSION_RESOURCE)) {
+            if (inputStream == null) {
+                return UNKNOWN_VERSION;
+            }
+            Properties properties = new Properties();
+            properties.load(inputStream);
+            return properties.getProperty(VERSION_PROP, UNKNOWN_VERSION);
+        } catch (IOException e) {
+            LOGGER.warn("Could not read enricher version.", e);
+            return UNKNOWN_VERSION;
+        }
+    }
+
+    /**
+     * Gets the enricher version.
+     *
+     * @return the version.
+     */
+    static String getVersion() {
+        return VERSION;
+    }
+
+    /**
+     * Computes the hex encoded hash of the passed data.
+     *
+     * @param data The data.
+     * @return the hash.
+     */
+    static String hash(byte[]... data) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(String.format("Hash algorithm not supported: %s", HASH_ALGORITHM), e);
+        }
+        for (byte[] _data : data) {
+            messageDigest.update(_data);
+            // separate the parts to avoid ambiguous concatenations
+            messageDigest.update((byte) 0);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : messageDigest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Computes the key of a source.
+     *
+     * @param content The source content.
+     * @param options The options influencing the enrichment.
+     * @return the key.
+     */
+    String getKey(byte[] content, String options) {
+        return hash(content, VERSION.getBytes(StandardCharsets.UTF_8), options.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Gets the cached enriched output.
+     *
+     * @param key        The key of the source.
+     * @param sourceFile The source file. Referenced sources are resolved relative to its directory.
+     * @return the enriched output with its referenced sources or <code>null</code> if not cached.
+     */
+    CachedResult get(String key, Path sourceFile) {
+        try {
+            Path dependenciesFile = cacheDir.resolve(DEPENDENCIES_DIR).resolve(key);
+            if (!Files.isRegularFile(dependenciesFile)) {
+                return null;
+            }
+            List<String> dependencies = Files.readAllLines(dependenciesFile, StandardCharsets.UTF_8);
+            Path entry = cacheDir.resolve(ENTRIES_DIR).resolve(getEntryKey(key, sourceFile, dependencies));
+            if (!Files.isRegularFile(entry)) {
+                return null;
+            }
+            String output = new String(Files.readAllBytes(entry), StandardCharsets.UTF_8);
+            // LRU bookkeeping
+            FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+            Files.setLastModifiedTime(dependenciesFile, now);
+            Files.setLastModifiedTime(entry, now);
+            Path sourceDir = sourceFile.toAbsolutePath().getParent();
+            return new CachedResult(output, dependencies.stream().map(d -> sourceDir.resolve(d).normalize())
+                    .collect(Collectors.toList()));
+        } catch (NoSuchFileException e) {
+            // concurrently evicted
+            return null;
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not read cache entry for file '%s'.", sourceFile.getFileName().toString()), e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the enriched output.
+     *
+     * @param key               The key of the source.
+     * @param sourceFile        The source file.
+     * @param referencedSources The sources read for the enrichment.
+     * @param output            The enriched output.
+     */
+    void put(String key, Path sourceFile, Collection<Path> referencedSources, String output) {
+        Path sourceDir = sourceFile.toAbsolutePath().getParent();
+        List<String> dependencies = referencedSources.stream().map(p -> sourceDir.relativize(p.toAbsolutePath()).toString()
+                .replace('\\', '/')).distinct().sorted().collect(Collectors.toList());
+        long addedSize;
+        try {
+            addedSize = writeFile(cacheDir.resolve(DEPENDENCIES_DIR).resolve(key),
+                    String.join(SEPARATOR, dependencies).getBytes(StandardCharsets.UTF_8));
+            addedSize += writeFile(cacheDir.resolve(ENTRIES_DIR).resolve(getEntryKey(key, sourceFile, dependencies)),
+                    output.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not write cache entry for file '%s'.", sourceFile.getFileName().toString()), e);
+            return;
+        }
+        addSize(addedSize);
+    }
+
+    private long writeFile(Path file, byte[] content) throws IOException {
+        long replacedSize;
+        try {
+            replacedSize = Files.size(file);
+        } catch (NoSuchFileException e) {
+            replacedSize = 0;
+        }
+        write(file, content);
+        return content.length - replacedSize;
+    }
+
+    private String getEntryKey(String key, Path sourceFile, List<String> dependencies) throws IOException {
+        Path sourceDir = sourceFile.toAbsolutePath().getParent();
+        List<byte[]> parts = new ArrayList<>();
+        parts.add(key.getBytes(StandardCharsets.UTF_8));
+        for (String dependency : dependencies) {
+            Path dependencyFile = sourceDir.resolve(dependency);
+            parts.add(dependency.getBytes(StandardCharsets.UTF_8));
+            parts.add(Files.isRegularFile(dependencyFile) ? hash(Files.readAllBytes(dependencyFile)).getBytes(StandardCharsets.UTF_8)
+                    : MISSING.getBytes(StandardCharsets.UTF_8));
+        }
+        return hash(parts.toArray(new byte[0][]));
+    }
+
+    /**
+     * Writes a file atomically. The content is written to a temporary sibling file moved into place, so concurrent
+     * readers never see a partial file.
+     *
+     * @param file    The file.
+     * @param content The content.
+     * @throws IOException if the file could not be written.
+     */
+    static void write(Path file, byte[] content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmpFile = file.resolveSibling(file.getFileName().toString() + "." + UUID.randomUUID() + TMP_EXT);
+        try {
+            Files.write(tmpFile, content);
+            try {
+                Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    private void addSize(long addedSize) {
+        Object monitor = DIRECTORY_MONITORS.computeIfAbsent(cacheDir.toAbsolutePath().normalize(), d -> new Object());
+        synchronized (monitor) {
+            try (FileChannel lockChannel = FileChannel.open(cacheDir.resolve(LOCK_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = lockChannel.lock();
+                try {
+                    Path sizeFile = cacheDir.resolve(SIZE_FILE);
+                    Long size = readSize(sizeFile);
+                    // the size is determined once by listing the cache
+                    size = size == null ? getSize(listCacheFiles()) : size + addedSize;
+                    if (size > maxSize) {
+                        size = evict();
+                    }
+                    write(sizeFile, Long.toString(size).getBytes(StandardCharsets.UTF_8));
+                } finally {
+                    lock.release();
+                }
+            } catch (OverlappingFileLockException e) {
+                // the same directory under another path in this JVM, the size is corrected by the next eviction
+                LOGGER.debug("Cache is locked by this JVM.", e);
+            } catch (IOException e) {
+                LOGGER.warn("Could not update cache size.", e);
+            }
+        }
+    }
+
+    private Long readSize(Path sizeFile) throws IOException {
+        if (!Files.isRegularFile(sizeFile)) {
+            return null;
+        }
+        try {
+            return Math.max(0, Long.parseLong(new String(Files.readAllBytes(sizeFile), StandardCharsets.UTF_8).trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private List<CacheFile> listCacheFiles() throws IOException {
+        List<CacheFile> cacheFiles = new ArrayList<>();
+        for (String dir : new String[]{DEPENDENCIES_DIR, ENTRIES_DIR}) {
+            if (!Files.isDirectory(cacheDir.resolve(dir))) {
+                continue;
+            }
+            List<Path> files;
+            try (Stream<Path> list = Files.list(cacheDir.resolve(dir))) {
+                files = list.filter(p -> !p.getFileName().toString().endsWith(TMP_EXT)).collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                try {
+                    cacheFiles.add(new CacheFile(file, Files.getLastModifiedTime(file), Files.size(file)));
+                } catch (NoSuchFileException e) {
+                    // concurrently replaced
+                }
+            }
+        }
+        return cacheFiles;
+    }
+
+    private static long getSize(List<CacheFile> cacheFiles) {
+        return cacheFiles.stream().mapToLong(c -> c.size).sum();
+    }
+
+    private long evict() throws IOException {
+        // called holding the lock
+        List<CacheFile> cacheFiles = listCacheFiles();
+        long size = getSize(cacheFiles);
+        if (size <= maxSize) {
+            return size;
+        }
+        cacheFiles.sort(Comparator.comparing(c -> c.lastModified));
+        for (CacheFile cacheFile : cacheFiles) {
+            if (size <= maxSize * EVICTION_TARGET) {
+                break;
+            }
+            LOGGER.debug(String.format("Evicting cache file '%s'", cacheFile.path.getFileName().toString()));
+            Files.deleteIfExists(cacheFile.path);
+            size -= cacheFile.size;
+        }
+        return size;
+    }
+
+    /**
+     * A file in the cache considered for eviction.
+     */
+    private static class CacheFile {
+
+        private final Path path;
+
+        private final FileTime lastModified;
+
+        private final long size;
+
+        private CacheFile(Path path, FileTime lastModified, long size) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+package de.ohmesoftware.javadoctoopenapischema;
+
+import com.github.javaparser.ast.expr.BooleanLiteralExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.IntegerLiteralExpr;
+import com.github.javaparser.ast.expr.MemberValuePair;
+import com.github.javaparser.ast.expr.NormalAnnotationExpr;
+import com.github.javaparser.ast.expr.StringLiteralExpr;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The members of the @Schema annotation computed for a type, field or getter.
+ * <p>
+ * The model is computed first and then applied in one pass to the annotation. A member is only touched if its value
+ * differs. A <code>null</code> member is not set. String members hold the escaped value of the string literal.
+ * </p>
+ *
+ * @author <a href="mailto:k_o_@users.sourceforge.net">Karsten Ohme
+ * (k_o_@users.sourceforge.net)</a>
+ */
+public class SchemaModel {
+
+    private static final String SCHEMA_DESCRIPTION = "description";
+    private static final String SCHEMA_TITLE = "title";
+    private static final String SCHEMA_REQUIRED = "required";
+    private static final String SCHEMA_MAX_LENGTH = "maxLength";
+    private static final String SCHEMA_MIN_LENGTH = "minLength";
+    private static final String SCHEMA_MAX = "maximum";
+    private static final String SCHEMA_MIN = "minimum";
+
+    /**
+     * The title.
+     */
+    private String title;
+
+    /**
+     * The description.
+     */
+    private String description;
+
+    /**
+     * <code>true</code> if the value is required.
+     */
+    private Boolean required;
+
+    /**
+     * The minimum length.
+     */
+    private Integer minLength;
+
+    /**
+     * The maximum length.
+     */
+    private Integer maxLength;
+
+    /**
+     * The minimum value.
+     */
+    private String minimum;
+
+    /**
+     * The maximum value.
+     */
+    private String maximum;
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public Boolean getRequired() {
+        return required;
+    }
+
+    public void setRequired(Boolean required) {
+        this.required = required;
+    }
+
+    public Integer getMinLength() {
+        return minLength;
+    }
+
+    public void setMinLength(Integer minLength) {
+        this.minLength = minLength;
+    }
+
+    public Integer getMaxLength() {
+        return maxLength;
+    }
+
+    public void setMaxLength(Integer maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    public String getMinimum() {
+        return minimum;
+    }
+
+    public void setMinimum(String minimum) {
+        this.minimum = minimum;
+    }
+
+    public String getMaximum() {
+        return maximum;
+    }
+
+    public void setMaximum(String maximum) {
+        this.maximum = maximum;
+    }
+
+    /**
+     * Applies the model to the @Schema annotation. Existing members are kept at their position, missing members are
+     * appended.
+     *
+     * @param annotationExpr The @Schema annotation.
+     * @return <code>true</code> if the annotation was changed.
+     */
+    public boolean applyTo(NormalAnnotationExpr annotationExpr) {
+        Map<String, MemberValuePair> pairs = new HashMap<>();
+        for (MemberValuePair pair : annotationExpr.getPairs()) {
+            pairs.putIfAbsent(pair.getName().getIdentifier(), pair);
+        }
+        boolean changed = applyString(annotationExpr, pairs, SCHEMA_TITLE, title);
+        changed |= applyBoolean(annotationExpr, pairs, SCHEMA_REQUIRED, required);
+        changed |= applyInteger(annotationExpr, pairs, SCHEMA_MIN_LENGTH, minLength);
+        changed |= applyInteger(annotationExpr, pairs, SCHEMA_MAX_LENGTH, maxLength);
+        changed |= applyString(annotationExpr, pairs, SCHEMA_MAX, maximum);
+        changed |= applyString(annotationExpr, pairs, SCHEMA_MIN, minimum);
+        changed |= applyString(annotationExpr, pairs, SCHEMA_DESCRIPTION, description);
+        return changed;
+    }
+
+    private boolean applyString(NormalAnnotationExpr annotationExpr, Map<String, MemberValuePair> pairs,
+                                String schemaProperty, String value) {
+        if (value == null) {
+            return false;
+        }
+        MemberValuePair pair = pairs.get(schemaProperty);
+        if (pair != null) {
+            Expression current = pair.getValue();
+            if (current.isStringLiteralExpr() && current.asStringLiteralExpr().getValue().equals(value)) {
+                return false;
+            }
+            pair.setValue(new StringLiteralExpr(value));
+        } else {
+            annotationExpr.addPair(schemaProperty, new StringLiteralExpr(value));
+        }
+        return true;
+    }
+
+    private boolean applyBoolean(NormalAnnotationExpr annotationExpr, Map<String, MemberValuePair> pairs,
+                                 String schemaProperty, Boolean value) {
+        if (value == null) {
+            return false;
+        }
+        MemberValuePair pair = pairs.get(schemaProperty);
+        if (pair != null) {
+            Expression current = pair.getValue();
+            if (current.isBooleanLiteralExpr() && current.asBooleanLiteralExpr().getValue() == value) {
+                return false;
+            }
+            pair.setValue(new BooleanLiteralExpr(value));
+        } else {
+            annotationExpr.addPair(schemaProperty, new BooleanLiteralExpr(value));
+        }
+        return true;
+    }
+
+    private boolean applyInteger(NormalAnnotationExpr annotationExpr, Map<String, MemberValuePair> pairs,
+                                 String schemaProperty, Integer value) {
+        if (value == null) {
+            return false;
+        }
+        MemberValuePair pair = pairs.get(schemaProperty);
+        if (pair != null) {
+            Expression current = pair.getValue();
+            if (current.isIntegerLiteralExpr() && current.asIntegerLiteralExpr().getValue().equals(value.toString())) {
+                return false;
+            }
+            pair.setValue(new IntegerLiteralExpr(value));
+        } else {
+            annotationExpr.addPair(schemaProperty, new IntegerLiteralExpr(value));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SchemaModel that = (SchemaModel) o;
+        return Objects.equals(title, that.title) &&
+                Objects.equals(description, that.description) &&
+                Objects.equals(required, that.required) &&
+                Objects.equals(minLength, that.minLength) &&
+                Objects.equals(maxLength, that.maxLength) &&
+                Objects.equals(minimum, that.minimum) &&
+                Objects.equals(maximum, that.maximum);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(title, description, required, minLength, maxLength, minimum, maximum);
+    }
+}
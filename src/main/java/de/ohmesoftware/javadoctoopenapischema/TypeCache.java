@@ -0,0 +1,105 @@
+package de.ohmesoftware.javadoctoopenapischema;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.TypeDeclaration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Cache of the parsed referenced types.
+ * <p>
+ * The classification of a property, e.g. if it is an embeddable or an enum, needs the declaration of the referenced
+ * type. The declarations are parsed once and shared by all files and runs using the cache. An entry is validated by the
+ * modification time and size of its source file and can also be invalidated explicitly. The cached declarations must
+ * only be read.
+ * </p>
+ *
+ * @author <a href="mailto:k_o_@users.sourceforge.net">Karsten Ohme
+ * (k_o_@users.sourceforge.net)</a>
+ */
+class TypeCache {
+
+    /**
+     * A parsed type with the state of its source file.
+     */
+    private static class Entry {
+
+        private final FileTime lastModifiedTime;
+
+        private final long size;
+
+        private final TypeDeclaration<?> typeDeclaration;
+
+        private Entry(FileTime lastModifiedTime, long size, TypeDeclaration<?> typeDeclaration) {
+            this.lastModifiedTime = lastModifiedTime;
+            this.size = size;
+            this.typeDeclaration = typeDeclaration;
+        }
+    }
+
+    /**
+     * The parsed types by their source file.
+     */
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the first type declared in a source file.
+     *
+     * @param sourceFile The source file.
+     * @param parser     The parser used if the type is not cached or outdated.
+     * @return the type declaration or <code>null</code> if the source file does not declare a type.
+     */
+    TypeDeclaration<?> get(Path sourceFile, Function<Path, CompilationUnit> parser) {
+        Path key = getKey(sourceFile);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(sourceFile, BasicFileAttributes.class);
+        } catch (IOException e) {
+            // let the parser report the missing file
+            entries.remove(key);
+            return parse(sourceFile, parser);
+        }
+        Entry entry = entries.get(key);
+        if (entry != null && entry.lastModifiedTime.equals(attributes.lastModifiedTime())
+                && entry.size == attributes.size()) {
+            return entry.typeDeclaration;
+        }
+        TypeDeclaration<?> typeDeclaration = parse(sourceFile, parser);
+        if (typeDeclaration != null) {
+            entries.put(key, new Entry(attributes.lastModifiedTime(), attributes.size(), typeDeclaration));
+        }
+        return typeDeclaration;
+    }
+
+    /**
+     * Removes the type of a changed source file.
+     *
+     * @param sourceFile The source file.
+     */
+    void invalidate(Path sourceFile) {
+        entries.remove(getKey(sourceFile));
+    }
+
+    /**
+     * Removes all types.
+     */
+    void invalidateAll() {
+        entries.clear();
+    }
+
+    private static Path getKey(Path sourceFile) {
+        return sourceFile.toAbsolutePath().normalize();
+    }
+
+    private static TypeDeclaration<?> parse(Path sourceFile, Function<Path, CompilationUnit> parser) {
+        return parser.apply(sourceFile).findFirst(TypeDeclaration.class).orElse(null);
+    }
+
+}
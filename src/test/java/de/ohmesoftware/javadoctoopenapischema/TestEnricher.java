@@ -1,15 +1,37 @@
 package de.ohmesoftware.javadoctoopenapischema;
 
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.expr.NormalAnnotationExpr;
+import com.github.javaparser.ast.expr.StringLiteralExpr;
+import de.ohmesoftware.javadoctoopenapischema.model.subdir.Bar;
 import de.ohmesoftware.javadoctoopenapischema.model.subdir.Foo;
 import de.ohmesoftware.javadoctoopenapischema.model.subdir.User;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static junit.framework.TestCase.*;
 
@@ -25,14 +47,39 @@ public class TestEnricher {
         return "src/test/java/"+ classOrPackageName.replace(".", "/");
     }
 
+    private static final String OUTPUT_PATH = "target/enriched";
+    private static final String CACHE_PATH = "target/enricher-cache";
+    private static final String GIT_PATH = "target/enricher-git";
+    private static final String OTHER_SOURCE_PATH = "target/enricher-sources";
+    private static final String ARCHIVE_PATH = "target/enricher-sources.zip";
+    private static final String FINGERPRINT_PATH = "target/enricher-fingerprints";
+    private static final String RETRY_PATH = "target/enricher-retry.txt";
+    private static final String WORKING_DIR_FILE = "EnricherWorkingDir.java";
+
     @After
     public void after() throws Exception {
+        FileUtils.deleteDirectory(new File(OUTPUT_PATH));
+        FileUtils.deleteDirectory(new File(CACHE_PATH));
+        FileUtils.deleteDirectory(new File(GIT_PATH));
+        FileUtils.deleteDirectory(new File(OTHER_SOURCE_PATH));
+        FileUtils.deleteQuietly(new File(ARCHIVE_PATH));
+        FileUtils.deleteDirectory(new File(FINGERPRINT_PATH));
+        FileUtils.deleteQuietly(new File(RETRY_PATH));
+        FileUtils.deleteQuietly(new File(WORKING_DIR_FILE));
         FileUtils.copyFile(new File(buildPath(User.class.getName())+".bak"),
                 new File(buildPath(User.class.getName())+".java"));
         FileUtils.copyFile(new File(buildPath(Foo.class.getName())+".bak"),
                 new File(buildPath(Foo.class.getName())+".java"));
     }
 
+    private static void git(File dir, String... args) throws Exception {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+        Process process = new ProcessBuilder(command).directory(dir).inheritIO().start();
+        assertEquals(0, process.waitFor());
+    }
+
     @Test
     public void enrich() throws Exception {
         Enricher enricher = new Enricher(buildPath(User.class.getPackage().getName().substring(0,
@@ -69,4 +116,622 @@ public class TestEnricher {
         assertFalse(newContent.contains("title = \"URI to the resource: A lot of data."));
     }
 
+    @Test
+    public void enrichOutputDir() throws Exception {
+        String sourcePath = buildPath(User.class.getPackage().getName().substring(0,
+                User.class.getPackage().getName().lastIndexOf(".")));
+        File staleFile = new File(OUTPUT_PATH, "subdir/Removed.java");
+        FileUtils.writeStringToFile(staleFile, "class Removed {}");
+        Enricher enricher = new Enricher(sourcePath,
+                Collections.singleton("**User.java"), Collections.singleton("**.bak"), false);
+        enricher.setOutputPath(OUTPUT_PATH);
+        enricher.enrich();
+        String sourceContent = IOUtils.toString(new FileReader(new File(buildPath(User.class.getName())+".java")));
+        String originalContent = IOUtils.toString(new FileReader(new File(buildPath(User.class.getName())+".bak")));
+        assertEquals(originalContent, sourceContent);
+        File outputFile = new File(OUTPUT_PATH, "subdir/User.java");
+        String newContent = IOUtils.toString(new FileReader(outputFile));
+        assertTrue(newContent.contains("@io.swagger.v3.oas.annotations.media.Schema(title = \"The username.\", required = true, minLength = 1, description = \"The username.\\n * This value is required.\\n * The minimum length is 1.\")"));
+        assertFalse(staleFile.exists());
+
+        // an up to date output is not written again
+        FileUtils.writeStringToFile(outputFile, "unchanged");
+        enricher.enrich();
+        assertEquals("unchanged", IOUtils.toString(new FileReader(outputFile)));
+
+        // changed options are no longer up to date
+        enricher = new Enricher(sourcePath,
+                Collections.singleton("**User.java"), Collections.singleton("**.bak"), true);
+        enricher.setOutputPath(OUTPUT_PATH);
+        enricher.enrich();
+        assertTrue(IOUtils.toString(new FileReader(outputFile)).contains("title = \"The username.\""));
+    }
+
+    @Test
+    public void enrichOutputDirReferencedChanged() throws Exception {
+        String modelPackage = Foo.class.getPackage().getName();
+        File modelPath = new File(OTHER_SOURCE_PATH, modelPackage.replace(".", "/"));
+        FileUtils.copyDirectory(new File(buildPath(modelPackage)), modelPath);
+        Enricher enricher = new Enricher(OTHER_SOURCE_PATH,
+                Collections.singleton("**Foo.java"), Collections.singleton("**.bak"), true);
+        enricher.setOutputPath(OUTPUT_PATH);
+        enricher.enrich();
+        File outputFile = new File(OUTPUT_PATH, modelPackage.replace(".", "/") + "/Foo.java");
+        assertTrue(IOUtils.toString(new FileReader(outputFile)).contains("title = \"URI to the resource association: A Bar object.\""));
+
+        // the output of a file referencing a changed type is outdated
+        File barFile = new File(modelPath, "Bar.java");
+        FileUtils.writeStringToFile(barFile, FileUtils.readFileToString(barFile).replace("public class Bar",
+                "@javax.persistence.Embeddable public class Bar"));
+        enricher.enrich();
+        assertFalse(IOUtils.toString(new FileReader(outputFile)).contains("title = \"URI to the resource association: A Bar object.\""));
+        assertTrue(new File(OUTPUT_PATH, ".enricher-stamps/" + modelPackage.replace(".", "/") + "/Foo.java.stamp").exists());
+    }
+
+    @Test
+    public void enrichOutputDirExplicitFile() throws Exception {
+        String modelPackage = Foo.class.getPackage().getName();
+        String sourcePath1 = OTHER_SOURCE_PATH + "/1";
+        File modelPath = new File(sourcePath1, modelPackage.replace(".", "/"));
+        FileUtils.copyDirectory(new File(buildPath(modelPackage)), modelPath);
+        Enricher enricher = new Enricher(sourcePath1, Collections.singleton("**.java"), null, true);
+        enricher.setOutputPath(OUTPUT_PATH);
+        enricher.enrich();
+        File fooOutputFile = new File(OUTPUT_PATH, modelPackage.replace(".", "/") + "/Foo.java");
+        File fooStampFile = new File(OUTPUT_PATH, ".enricher-stamps/" + modelPackage.replace(".", "/") + "/Foo.java.stamp");
+        File barOutputFile = new File(OUTPUT_PATH, modelPackage.replace(".", "/") + "/Bar.java");
+        assertTrue(fooStampFile.isFile());
+
+        // an explicit file is mirrored relative to its base source path like in the source path run
+        enricher = new Enricher(Collections.<String>emptyList(), null, null, true);
+        enricher.setFiles(Collections.singletonList(new File(modelPath, "Foo.java").getPath()));
+        enricher.setOutputPath(OUTPUT_PATH);
+        assertTrue(enricher.enrich().isSuccessful());
+        assertTrue(fooOutputFile.isFile());
+        assertTrue(fooStampFile.isFile());
+        assertTrue(barOutputFile.isFile());
+        assertFalse(new File(OUTPUT_PATH, "target").exists());
+
+        // the outputs of another source path are kept
+        String sourcePath2 = OTHER_SOURCE_PATH + "/2";
+        FileUtils.writeStringToFile(new File(sourcePath2, "other/Other.java"), "package other;\n"
+                + "public class Other {\n    /**\n     * The name.\n     */\n    private String name;\n}\n");
+        enricher = new Enricher(sourcePath2, Collections.singleton("**.java"), null, true);
+        enricher.setOutputPath(OUTPUT_PATH);
+        enricher.enrich();
+        assertTrue(new File(OUTPUT_PATH, "other/Other.java").isFile());
+        assertTrue(fooOutputFile.isFile());
+        assertTrue(fooStampFile.isFile());
+        assertTrue(barOutputFile.isFile());
+
+        // the output of a removed source of the run is deleted
+        FileUtils.forceDelete(new File(modelPath, "Bar.java"));
+        enricher = new Enricher(sourcePath1, Collections.singleton("**.java"), null, true);
+        enricher.setOutputPath(OUTPUT_PATH);
+        enricher.enrich();
+        assertFalse(barOutputFile.exists());
+        assertTrue(fooOutputFile.isFile());
+        assertTrue(new File(OUTPUT_PATH, "other/Other.java").isFile());
+    }
+
+    @Test
+    public void enrichCached() throws Exception {
+        String sourcePath = buildPath(Foo.class.getPackage().getName().substring(0,
+                Foo.class.getPackage().getName().lastIndexOf(".")));
+        Enricher enricher = new Enricher(sourcePath,
+                Collections.singleton("**Foo.java"), Collections.singleton("**.bak"), true);
+        enricher.setOutputPath(OUTPUT_PATH);
+        enricher.setCache(CACHE_PATH, 1024 * 1024);
+        enricher.enrich();
+        File outputFile = new File(OUTPUT_PATH, "subdir/Foo.java");
+        assertTrue(IOUtils.toString(new FileReader(outputFile)).contains("title = \"URIs to the resource associations: Multiple bars.\""));
+
+        File[] entries = new File(CACHE_PATH, "entries").listFiles();
+        assertNotNull(entries);
+        assertEquals(1, entries.length);
+        FileUtils.writeStringToFile(entries[0], "cached");
+        // a removed output, e.g. after a clean, is taken from the cache
+        FileUtils.deleteDirectory(new File(OUTPUT_PATH));
+        enricher.enrich();
+        assertEquals("cached", IOUtils.toString(new FileReader(outputFile)));
+        // the output taken from the cache is stamped and up to date in the next run
+        assertTrue(new File(OUTPUT_PATH, ".enricher-stamps/subdir/Foo.java.stamp").isFile());
+        FileUtils.writeStringToFile(outputFile, "unchanged");
+        enricher.enrich();
+        assertEquals("unchanged", IOUtils.toString(new FileReader(outputFile)));
+
+        // a change of a referenced type invalidates the entry
+        File barFile = new File(buildPath(Bar.class.getName()) + ".java");
+        String barContent = FileUtils.readFileToString(barFile);
+        try {
+            FileUtils.writeStringToFile(barFile, barContent.replace("public class Bar", "@javax.persistence.Embeddable public class Bar"));
+            enricher.enrich();
+            String newContent = IOUtils.toString(new FileReader(outputFile));
+            assertFalse(newContent.contains("title = \"URI to the resource association: A Bar object.\""));
+            assertEquals(2, new File(CACHE_PATH, "entries").listFiles().length);
+        } finally {
+            FileUtils.writeStringToFile(barFile, barContent);
+        }
+    }
+
+    @Test
+    public void cacheEviction() throws Exception {
+        Path sourceFile = new File(buildPath(Foo.class.getName()) + ".java").toPath();
+        // two caches of one JVM sharing the directory
+        ResultCache resultCache1 = new ResultCache(new File(CACHE_PATH).toPath(), 1000);
+        ResultCache resultCache2 = new ResultCache(new File(CACHE_PATH).toPath(), 1000);
+        char[] output = new char[300];
+        Arrays.fill(output, 'x');
+        for (int i = 0; i < 10; i++) {
+            ResultCache resultCache = i % 2 == 0 ? resultCache1 : resultCache2;
+            resultCache.put(resultCache.getKey(new byte[]{(byte) i}, ""), sourceFile, Collections.emptyList(),
+                    new String(output));
+        }
+        long size = Long.parseLong(FileUtils.readFileToString(new File(CACHE_PATH, ".size"), StandardCharsets.UTF_8));
+        assertTrue(size <= 1000);
+        long actualSize = 0;
+        for (String dir : new String[]{"dependencies", "entries"}) {
+            for (File file : new File(CACHE_PATH, dir).listFiles()) {
+                actualSize += file.length();
+            }
+        }
+        assertEquals(actualSize, size);
+        // the most recent entry is kept
+        assertNotNull(resultCache2.get(resultCache2.getKey(new byte[]{9}, ""), sourceFile));
+        assertNull(resultCache1.get(resultCache1.getKey(new byte[]{0}, ""), sourceFile));
+    }
+
+    @Test
+    public void enrichFingerprinted() throws Exception {
+        String sourcePath = buildPath(User.class.getPackage().getName().substring(0,
+                User.class.getPackage().getName().lastIndexOf(".")));
+        Enricher enricher = new Enricher(sourcePath,
+                Collections.singleton("**User.java"), Collections.singleton("**.bak"), false);
+        enricher.setOutputPath(OUTPUT_PATH);
+        enricher.setFingerprintPath(FINGERPRINT_PATH);
+        enricher.enrich();
+        File outputFile = new File(OUTPUT_PATH, "subdir/User.java");
+        assertTrue(IOUtils.toString(new FileReader(outputFile)).contains("title = \"The username.\""));
+
+        File[] sidecarFiles = new File(FINGERPRINT_PATH).listFiles();
+        assertNotNull(sidecarFiles);
+        assertEquals(1, sidecarFiles.length);
+        Properties sidecar = new Properties();
+        try (Reader reader = new FileReader(sidecarFiles[0])) {
+            sidecar.load(reader);
+        }
+        assertEquals("The username.", sidecar.getProperty("User#username.title"));
+        // an unchanged member is taken from the fingerprints
+        sidecar.setProperty("User#username.title", "Reused.");
+        sidecar.setProperty("User#emailAddress.title", "Reused.");
+        try (Writer writer = new FileWriter(sidecarFiles[0])) {
+            sidecar.store(writer, null);
+        }
+        File userFile = new File(buildPath(User.class.getName()) + ".java");
+        String userContent = FileUtils.readFileToString(userFile, StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(userFile, userContent.replace("The email address.", "The mail address."),
+                StandardCharsets.UTF_8);
+        enricher.enrich();
+        String newContent = IOUtils.toString(new FileReader(outputFile));
+        assertTrue(newContent.contains("title = \"Reused.\""));
+        // a changed member is computed again
+        assertTrue(newContent.contains("title = \"The mail address.\""));
+    }
+
+    @Test
+    public void enrichFingerprintedInherited() throws Exception {
+        String modelPackage = Foo.class.getPackage().getName();
+        File modelPath = new File(OTHER_SOURCE_PATH, modelPackage.replace(".", "/"));
+        String header = "package " + modelPackage + ";\n";
+        for (int i = 1; i <= 2; i++) {
+            FileUtils.writeStringToFile(new File(modelPath, "Base" + i + ".java"), header
+                    + "public abstract class Base" + i + " {\n"
+                    + "    /**\n     * The ID " + i + ".\n     */\n    private Long id;\n"
+                    + "    public Long getId() {\n        return id;\n    }\n}\n");
+        }
+        File customerFile = new File(modelPath, "Customer.java");
+        FileUtils.writeStringToFile(customerFile, header
+                + "public class Customer extends Base1 {\n"
+                + "    @Override\n    public Long getId() {\n        return super.getId();\n    }\n}\n");
+        Enricher enricher = new Enricher(OTHER_SOURCE_PATH,
+                Collections.singleton("**Customer.java"), Collections.singleton("**.bak"), false);
+        enricher.setOutputPath(OUTPUT_PATH);
+        enricher.setFingerprintPath(FINGERPRINT_PATH);
+        enricher.enrich();
+        File outputFile = new File(OUTPUT_PATH, modelPackage.replace(".", "/") + "/Customer.java");
+        assertTrue(IOUtils.toString(new FileReader(outputFile)).contains("title = \"The ID 1.\""));
+
+        // the getter is unchanged, but inherits from another superclass
+        FileUtils.writeStringToFile(customerFile,
+                FileUtils.readFileToString(customerFile).replace("extends Base1", "extends Base2"));
+        enricher.enrich();
+        assertTrue(IOUtils.toString(new FileReader(outputFile)).contains("title = \"The ID 2.\""));
+    }
+
+    @Test
+    public void applySchemaModel() throws Exception {
+        NormalAnnotationExpr annotationExpr = JavaParser.parseAnnotation(
+                "@Schema(description = \"Test\", title = \"A title.\", minLength = 1)").asNormalAnnotationExpr();
+        SchemaModel schemaModel = new SchemaModel();
+        schemaModel.setTitle("A title.");
+        schemaModel.setMinLength(1);
+        StringLiteralExpr title = annotationExpr.getPairs().get(1).getValue().asStringLiteralExpr();
+        assertFalse(schemaModel.applyTo(annotationExpr));
+        assertSame(title, annotationExpr.getPairs().get(1).getValue());
+
+        schemaModel.setDescription("Other");
+        schemaModel.setRequired(true);
+        assertTrue(schemaModel.applyTo(annotationExpr));
+        assertEquals("@Schema(description = \"Other\", title = \"A title.\", minLength = 1, required = true)",
+                annotationExpr.toString());
+        assertFalse(schemaModel.applyTo(annotationExpr));
+    }
+
+    @Test
+    public void enrichConcurrently() throws Exception {
+        String sourcePath = buildPath(User.class.getPackage().getName().substring(0,
+                User.class.getPackage().getName().lastIndexOf(".")));
+        Enricher enricher = new Enricher(sourcePath,
+                null, Collections.singleton("**.bak"), true);
+        enricher.setOutputPath(OUTPUT_PATH);
+        enricher.setMaxThreads(4);
+        assertTrue(enricher.enrich().isSuccessful());
+        for (String name : new String[]{"Bar", "Embeddable", "Foo", "MyEnum", "User"}) {
+            assertTrue(new File(OUTPUT_PATH, "subdir/" + name + ".java").isFile());
+        }
+        assertTrue(IOUtils.toString(new FileReader(new File(OUTPUT_PATH, "subdir/Foo.java")))
+                .contains("title = \"URIs to the resource associations: Multiple bars.\""));
+
+        // in place the files are read as referenced types while others are written
+        String modelPackage = Foo.class.getPackage().getName();
+        File modelPath = new File(OTHER_SOURCE_PATH, modelPackage.replace(".", "/"));
+        FileUtils.copyDirectory(new File(buildPath(modelPackage)), modelPath);
+        enricher = new Enricher(OTHER_SOURCE_PATH, Collections.singleton("**.java"), null, true);
+        enricher.setMaxThreads(4);
+        assertTrue(enricher.enrich().isSuccessful());
+        String[] tmpFiles = modelPath.list((dir, name) -> name.endsWith(".tmp"));
+        assertNotNull(tmpFiles);
+        assertEquals(0, tmpFiles.length);
+    }
+
+    private static int runScheduler(List<Path> paths, long heapUsed, long heapMax) throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        new AdaptiveScheduler(4, null, () -> heapUsed, () -> heapMax).run(paths, p -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+        });
+        return maxRunning.get();
+    }
+
+    @Test
+    public void scheduleAdaptively() throws Exception {
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            File file = new File(OTHER_SOURCE_PATH, "File" + i + ".java");
+            FileUtils.writeByteArrayToFile(file, new byte[100]);
+            paths.add(file.toPath());
+        }
+        // the concurrency is raised while the heap has headroom
+        int maxRunning = runScheduler(paths, 0, 1L << 30);
+        assertTrue(maxRunning > 1);
+        assertTrue(maxRunning <= 4);
+        // a tight heap keeps a single file in process
+        assertEquals(1, runScheduler(paths, 900L << 20, 1L << 30));
+        // the estimate of 4000 bytes exceeds half of the headroom, so each file is processed on its own
+        assertEquals(1, runScheduler(paths, 0, 6000));
+    }
+
+    @Test
+    public void enrichOnlyAnnotated() throws Exception {
+        String sourcePath = buildPath(User.class.getPackage().getName().substring(0,
+                User.class.getPackage().getName().lastIndexOf(".")));
+        Enricher enricher = new Enricher(sourcePath,
+                null, Collections.singleton("**.bak"), false);
+        enricher.setOutputPath(OUTPUT_PATH);
+        enricher.setOnlyAnnotated(Collections.singleton("javax.persistence.Embeddable"));
+        enricher.enrich();
+        String userContent = IOUtils.toString(new FileReader(new File(OUTPUT_PATH, "subdir/User.java")));
+        assertEquals(IOUtils.toString(new FileReader(new File(buildPath(User.class.getName()) + ".java"))), userContent);
+        String embeddableContent = IOUtils.toString(new FileReader(new File(OUTPUT_PATH, "subdir/Embeddable.java")));
+        assertTrue(embeddableContent.contains("@io.swagger.v3.oas.annotations.media.Schema("));
+    }
+
+    @Test
+    public void enrichChangedSince() throws Exception {
+        File gitDir = new File(GIT_PATH);
+        File subdir = new File(gitDir, "subdir");
+        FileUtils.copyDirectory(new File(buildPath(User.class.getPackage().getName())), subdir);
+        try {
+            git(gitDir, "init", "-q");
+        } catch (IOException e) {
+            Assume.assumeNoException("git is not available", e);
+        }
+        git(gitDir, "add", ".");
+        git(gitDir, "-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", "initial");
+        FileUtils.writeStringToFile(new File(subdir, "Bar.java"), "\n// changed", true);
+
+        Enricher enricher = new Enricher(GIT_PATH, Collections.singleton("**.java"), null, false);
+        enricher.setOutputPath(OUTPUT_PATH);
+        enricher.setChangedSince("HEAD");
+        // after a clean also the unchanged files are written
+        assertEquals(5, enricher.enrich().getProcessedFiles().size());
+        assertTrue(new File(OUTPUT_PATH, "subdir/MyEnum.java").isFile());
+        assertTrue(new File(OUTPUT_PATH, "subdir/Embeddable.java").isFile());
+
+        FileUtils.writeStringToFile(new File(subdir, "Bar.java"), "\n// changed again", true);
+        List<String> processedFiles = enricher.enrich().getProcessedFiles().stream()
+                .map(p -> p.getFileName().toString()).sorted().collect(Collectors.toList());
+        assertEquals(Arrays.asList("Bar.java", "Foo.java", "User.java"), processedFiles);
+        assertTrue(new File(OUTPUT_PATH, "subdir/MyEnum.java").isFile());
+        assertTrue(new File(OUTPUT_PATH, "subdir/Embeddable.java").isFile());
+    }
+
+    @Test
+    public void enrichChangedSinceInherited() throws Exception {
+        File gitDir = new File(GIT_PATH);
+        File modelPath = new File(gitDir, "model");
+        String header = "package model;\n";
+        FileUtils.writeStringToFile(new File(modelPath, "BaseEntity.java"), header
+                + "public abstract class BaseEntity {\n"
+                + "    /**\n     * The ID.\n     */\n    private Long id;\n"
+                + "    public Long getId() {\n        return id;\n    }\n}\n");
+        FileUtils.writeStringToFile(new File(modelPath, "AuditedEntity.java"), header
+                + "public abstract class AuditedEntity extends BaseEntity {\n"
+                + "    /**\n     * The creator.\n     */\n    private String createdBy;\n}\n");
+        FileUtils.writeStringToFile(new File(modelPath, "Customer.java"), header
+                + "public class Customer extends AuditedEntity {\n"
+                + "    /**\n     * The name.\n     */\n    private String name;\n"
+                + "    @Override\n    public Long getId() {\n        return super.getId();\n    }\n}\n");
+        FileUtils.writeStringToFile(new File(modelPath, "Product.java"), header
+                + "public class Product {\n"
+                + "    /**\n     * The name.\n     */\n    private String name;\n}\n");
+        try {
+            git(gitDir, "init", "-q");
+        } catch (IOException e) {
+            Assume.assumeNoException("git is not available", e);
+        }
+        git(gitDir, "add", ".");
+        git(gitDir, "-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", "initial");
+        Enricher enricher = new Enricher(GIT_PATH, Collections.singleton("**.java"), null, false);
+        enricher.setOutputPath(OUTPUT_PATH);
+        enricher.setChangedSince("HEAD");
+        enricher.enrich();
+
+        FileUtils.writeStringToFile(new File(modelPath, "BaseEntity.java"),
+                FileUtils.readFileToString(new File(modelPath, "BaseEntity.java")).replace("The ID.", "The identifier."));
+        List<String> processedFiles = enricher.enrich().getProcessedFiles().stream()
+                .map(p -> p.getFileName().toString()).sorted().collect(Collectors.toList());
+        // Customer only references AuditedEntity, but inherits the changed member of BaseEntity
+        assertEquals(Arrays.asList("AuditedEntity.java", "BaseEntity.java", "Customer.java"), processedFiles);
+        assertTrue(IOUtils.toString(new FileReader(new File(OUTPUT_PATH, "model/Customer.java"))).contains("title = \"The identifier.\""));
+    }
+
+    @Test
+    public void enrichMultipleSourcePaths() throws Exception {
+        String modelPackage = User.class.getPackage().getName().substring(0,
+                User.class.getPackage().getName().lastIndexOf("."));
+        // a type in another source path referencing Bar
+        File otherModelPath = new File(OTHER_SOURCE_PATH, modelPackage.replace(".", "/"));
+        FileUtils.writeStringToFile(new File(otherModelPath, "subdir/Baz.java"),
+                FileUtils.readFileToString(new File(buildPath(Foo.class.getName()) + ".java")).replace("class Foo", "class Baz"));
+        Enricher enricher = new Enricher(Arrays.asList(otherModelPath.getPath(), buildPath(modelPackage)),
+                Collections.singleton("**Baz.java"), Collections.singleton("**.bak"), true);
+        enricher.setFiles(Collections.singletonList(buildPath(User.class.getName()) + ".java"));
+        enricher.setOutputPath(OUTPUT_PATH);
+        enricher.enrich();
+        String newContent = IOUtils.toString(new FileReader(new File(OUTPUT_PATH, "subdir/Baz.java")));
+        assertTrue(newContent.contains("title = \"URI to the resource association: A Bar object.\""));
+        assertFalse(new File(OUTPUT_PATH, "subdir/Foo.java").exists());
+        // the explicit file is below the second source path
+        newContent = IOUtils.toString(new FileReader(new File(OUTPUT_PATH, "subdir/User.java")));
+        assertTrue(newContent.contains("@io.swagger.v3.oas.annotations.media.Schema(title = \"The username.\""));
+    }
+
+    @Test
+    public void enrichSession() throws Exception {
+        String modelPackage = Foo.class.getPackage().getName().substring(0,
+                Foo.class.getPackage().getName().lastIndexOf("."));
+        // the same model in two source paths
+        File sourcePath1 = new File(OTHER_SOURCE_PATH + "/1", modelPackage.replace(".", "/"));
+        File sourcePath2 = new File(OTHER_SOURCE_PATH + "/2", modelPackage.replace(".", "/"));
+        FileUtils.copyDirectory(new File(buildPath(modelPackage)), sourcePath1);
+        FileUtils.copyDirectory(new File(buildPath(modelPackage)), sourcePath2);
+        Enricher configuration = new Enricher(Collections.<String>emptyList(),
+                Collections.singleton("**.java"), Collections.singleton("**.bak"), true);
+        try (EnrichmentSession session = new EnrichmentSession(configuration, 2)) {
+            CompletableFuture<EnrichmentResult> result1 = session.enrich(Collections.singletonList(sourcePath1.getPath()));
+            CompletableFuture<EnrichmentResult> result2 = session.enrich(Collections.singletonList(sourcePath2.getPath()));
+            assertEquals(5, result1.get().getProcessedFiles().size());
+            assertEquals(5, result2.get().getProcessedFiles().size());
+            File fooFile = new File(sourcePath1, "subdir/Foo.java");
+            assertTrue(FileUtils.readFileToString(fooFile).contains("title = \"URI to the resource association: A Bar object.\""));
+            assertTrue(FileUtils.readFileToString(new File(sourcePath2, "subdir/Foo.java")).contains(
+                    "title = \"URI to the resource association: A Bar object.\""));
+
+            // a changed referenced type is taken after the invalidation
+            File barFile = new File(sourcePath1, "subdir/Bar.java");
+            FileUtils.writeStringToFile(barFile, FileUtils.readFileToString(barFile).replace("public class Bar",
+                    "@javax.persistence.Embeddable public class Bar"));
+            session.invalidate(barFile.toPath());
+            FileUtils.copyFile(new File(buildPath(Foo.class.getName()) + ".bak"), fooFile);
+            EnrichmentResult result = session.enrich(Collections.emptyList(),
+                    Collections.singletonList(fooFile.getPath())).get();
+            assertEquals(Collections.singletonList(fooFile.toPath()), result.getProcessedFiles());
+            assertFalse(FileUtils.readFileToString(fooFile).contains("title = \"URI to the resource association: A Bar object.\""));
+        }
+    }
+
+    @Test
+    public void enrichSessionOutputDir() throws Exception {
+        String modelPackage = Foo.class.getPackage().getName();
+        File sourcePath1 = new File(OTHER_SOURCE_PATH + "/1");
+        File sourcePath2 = new File(OTHER_SOURCE_PATH + "/2");
+        FileUtils.copyDirectory(new File(buildPath(modelPackage)), new File(sourcePath1, modelPackage.replace(".", "/")));
+        FileUtils.writeStringToFile(new File(sourcePath2, "other/Other.java"), "package other;\n"
+                + "public class Other {\n    /**\n     * The name.\n     */\n    private String name;\n}\n");
+        // the output of another run which is just written has no stamp yet
+        File pendingFile = new File(OUTPUT_PATH, "pending/Pending.java");
+        FileUtils.writeStringToFile(pendingFile, "class Pending {}");
+        Enricher configuration = new Enricher(Collections.<String>emptyList(),
+                Collections.singleton("**.java"), Collections.singleton("**.bak"), true);
+        configuration.setOutputPath(OUTPUT_PATH);
+        try (EnrichmentSession session = new EnrichmentSession(configuration, 2)) {
+            CompletableFuture<EnrichmentResult> result1 = session.enrich(Collections.singletonList(sourcePath1.getPath()));
+            CompletableFuture<EnrichmentResult> result2 = session.enrich(Collections.singletonList(sourcePath2.getPath()));
+            assertTrue(result1.get().isSuccessful());
+            assertTrue(result2.get().isSuccessful());
+        }
+        assertTrue(new File(OUTPUT_PATH, modelPackage.replace(".", "/") + "/Foo.java").isFile());
+        assertTrue(new File(OUTPUT_PATH, "other/Other.java").isFile());
+        assertTrue(pendingFile.isFile());
+    }
+
+    @Test
+    public void enrichWithFailures() throws Exception {
+        String modelPackage = Foo.class.getPackage().getName();
+        File modelPath = new File(OTHER_SOURCE_PATH, modelPackage.replace(".", "/"));
+        FileUtils.copyDirectory(new File(buildPath(modelPackage)), modelPath);
+        // a syntax error and a missing referenced type
+        File brokenFile = new File(modelPath, "Broken.java");
+        FileUtils.writeStringToFile(brokenFile, "package " + modelPackage + ";\npublic class Broken {\n");
+        File unresolvedFile = new File(modelPath, "Unresolved.java");
+        FileUtils.writeStringToFile(unresolvedFile, "package " + modelPackage + ";\npublic class Unresolved {\n"
+                + "    /**\n     * Missing.\n     */\n    private Missing missing;\n}\n");
+        Enricher enricher = new Enricher(OTHER_SOURCE_PATH,
+                Collections.singleton("**.java"), Collections.singleton("**.bak"), true);
+        enricher.setOutputPath(OUTPUT_PATH);
+        enricher.setRetryPath(RETRY_PATH);
+        EnrichmentResult result = enricher.enrich();
+        assertFalse(result.isSuccessful());
+        assertEquals(7, result.getProcessedFiles().size());
+        assertEquals(2, result.getFailures().size());
+        assertEquals(brokenFile.toPath(), result.getFailures().get(0).getFile());
+        assertFalse(result.getFailures().get(0).getMessages().isEmpty());
+        assertEquals(unresolvedFile.toPath(), result.getFailures().get(1).getFile());
+        assertTrue(result.getFailures().get(1).getMessages().get(0).contains("Missing.java"));
+        // the other files are enriched
+        File outputPath = new File(OUTPUT_PATH, modelPackage.replace(".", "/"));
+        assertTrue(IOUtils.toString(new FileReader(new File(outputPath, "Foo.java"))).contains(
+                "title = \"URI to the resource association: A Bar object.\""));
+        assertFalse(new File(outputPath, "Broken.java").exists());
+        assertEquals(Arrays.asList(brokenFile.getPath(), unresolvedFile.getPath()),
+                FileUtils.readLines(new File(RETRY_PATH), StandardCharsets.UTF_8));
+
+        // only the failed files are enriched again
+        FileUtils.writeStringToFile(brokenFile, "package " + modelPackage + ";\npublic class Broken {\n}\n");
+        result = enricher.enrich();
+        assertEquals(Arrays.asList(brokenFile.toPath(), unresolvedFile.toPath()), result.getProcessedFiles().stream()
+                .sorted().collect(Collectors.toList()));
+        assertEquals(1, result.getFailures().size());
+        assertTrue(new File(outputPath, "Broken.java").exists());
+        assertEquals(Collections.singletonList(unresolvedFile.getPath()),
+                FileUtils.readLines(new File(RETRY_PATH), StandardCharsets.UTF_8));
+
+        FileUtils.writeStringToFile(new File(modelPath, "Missing.java"), "package " + modelPackage
+                + ";\npublic class Missing {\n}\n");
+        result = enricher.enrich();
+        assertTrue(result.isSuccessful());
+        assertEquals(1, result.getProcessedFiles().size());
+        assertFalse(new File(RETRY_PATH).exists());
+    }
+
+    @Test
+    public void enrichInherited() throws Exception {
+        String modelPackage = Foo.class.getPackage().getName();
+        File modelPath = new File(OTHER_SOURCE_PATH, modelPackage.replace(".", "/"));
+        String header = "package " + modelPackage + ";\nimport javax.validation.constraints.*;\n";
+        FileUtils.writeStringToFile(new File(modelPath, "BaseEntity.java"), header
+                + "public abstract class BaseEntity {\n"
+                + "    /**\n     * The ID.\n     */\n    @NotNull\n    private Long id;\n"
+                + "    public Long getId() {\n        return id;\n    }\n}\n");
+        FileUtils.writeStringToFile(new File(modelPath, "AuditedEntity.java"), header
+                + "public abstract class AuditedEntity extends BaseEntity {\n"
+                + "    /**\n     * The creator.\n     */\n    @Size(max = 64)\n    private String createdBy;\n"
+                + "    public String getCreatedBy() {\n        return createdBy;\n    }\n"
+                + "    /**\n     * The identifier.\n     */\n    @Override\n"
+                + "    public Long getId() {\n        return super.getId();\n    }\n}\n");
+        for (String name : new String[]{"Customer", "Supplier"}) {
+            FileUtils.writeStringToFile(new File(modelPath, name + ".java"), header
+                    + "public class " + name + " extends AuditedEntity {\n"
+                    + "    @Override\n    public Long getId() {\n        return super.getId();\n    }\n"
+                    + "    /**\n     * The creator login.\n     */\n    @Override\n"
+                    + "    public String getCreatedBy() {\n        return super.getCreatedBy();\n    }\n}\n");
+        }
+        Enricher enricher = new Enricher(OTHER_SOURCE_PATH,
+                Collections.singleton("**.java"), Collections.singleton("**.bak"), false);
+        enricher.setOutputPath(OUTPUT_PATH);
+        assertTrue(enricher.enrich().isSuccessful());
+        File outputPath = new File(OUTPUT_PATH, modelPackage.replace(".", "/"));
+        for (String name : new String[]{"AuditedEntity", "Customer", "Supplier"}) {
+            String newContent = IOUtils.toString(new FileReader(new File(outputPath, name + ".java")));
+            // the Javadoc of the overriding getter of the intermediate superclass is layered on the inherited constraints
+            assertTrue(newContent.contains("@io.swagger.v3.oas.annotations.media.Schema(title = \"The identifier.\", required = true, description = \"The identifier.\\n * This value is required.\")"));
+        }
+        for (String name : new String[]{"Customer", "Supplier"}) {
+            String newContent = IOUtils.toString(new FileReader(new File(outputPath, name + ".java")));
+            // the own Javadoc overrides the inherited one, the constraints are kept
+            assertTrue(newContent.contains("@io.swagger.v3.oas.annotations.media.Schema(title = \"The creator login.\", maxLength = 64, description = \"The creator login.\\n * The maximum length is 64.\")"));
+        }
+    }
+
+    @Test
+    public void enrichVanishedFile() throws Exception {
+        String modelPackage = Foo.class.getPackage().getName();
+        String fooFile = buildPath(Foo.class.getName()) + ".java";
+        String goneFile = buildPath(modelPackage) + "/Gone.java";
+        Enricher enricher = new Enricher(Collections.<String>emptyList(), null, null, true);
+        enricher.setFiles(Arrays.asList(fooFile, goneFile));
+        enricher.setOutputPath(OUTPUT_PATH);
+        enricher.setRetryPath(RETRY_PATH);
+        EnrichmentResult result = enricher.enrich();
+        assertEquals(1, result.getFailures().size());
+        assertEquals(new File(goneFile).toPath(), result.getFailures().get(0).getFile());
+        // the other file is enriched, mirrored relative to its base source path
+        assertTrue(new File(OUTPUT_PATH, Foo.class.getName().replace(".", "/") + ".java").isFile());
+        assertEquals(Collections.singletonList(new File(goneFile).getPath()),
+                FileUtils.readLines(new File(RETRY_PATH), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void enrichWorkingDirFile() throws Exception {
+        FileUtils.writeStringToFile(new File(WORKING_DIR_FILE), "public class EnricherWorkingDir {\n"
+                + "    /**\n     * The name.\n     */\n    private String name;\n}\n");
+        Enricher enricher = new Enricher(Collections.<String>emptyList(), null, null, false);
+        // a file given by its name only
+        enricher.setFiles(Collections.singletonList(WORKING_DIR_FILE));
+        enricher.setOutputPath(OUTPUT_PATH);
+        assertTrue(enricher.enrich().isSuccessful());
+        assertTrue(IOUtils.toString(new FileReader(new File(OUTPUT_PATH, WORKING_DIR_FILE))).contains("title = \"The name.\""));
+    }
+
+    @Test
+    public void enrichArchive() throws Exception {
+        String modelPackage = Foo.class.getPackage().getName();
+        URI uri = URI.create("jar:" + new File(ARCHIVE_PATH).getAbsoluteFile().toURI());
+        try (FileSystem fileSystem = FileSystems.newFileSystem(uri, Collections.singletonMap("create", "true"))) {
+            Path modelPath = fileSystem.getPath(modelPackage.replace(".", "/"));
+            Files.createDirectories(modelPath);
+            for (String name : new String[]{"Bar", "Embeddable", "Foo", "MyEnum"}) {
+                Files.copy(new File(buildPath(modelPackage) + "/" + name + ".java").toPath(), modelPath.resolve(name + ".java"));
+            }
+        }
+        try (FileSystem fileSystem = FileSystems.newFileSystem(uri, Collections.emptyMap())) {
+            Enricher enricher = new Enricher("/", Collections.singleton("**Foo.java"), null, true);
+            enricher.setFileSystem(fileSystem);
+            enricher.enrich();
+        }
+        try (FileSystem fileSystem = FileSystems.newFileSystem(uri, Collections.emptyMap())) {
+            String newContent = new String(Files.readAllBytes(fileSystem.getPath(modelPackage.replace(".", "/"), "Foo.java")),
+                    StandardCharsets.UTF_8);
+            assertTrue(newContent.contains("title = \"URI to the resource association: A Bar object.\""));
+            assertTrue(newContent.contains("title = \"URIs to the resource associations: Multiple bars.\""));
+        }
+    }
+
 }